@@ -16,6 +16,29 @@ public final class Assembler
 	}
 
 	public static void assemble(String program, Processor processor)
+	{
+		assemble(new String[]{program}, processor);
+	}
+
+	/**
+	 * Assembles each program into a hardware context of its own, from the base address of
+	 * the context, so that their instructions, data and labels do not overlap
+	 * @param programs the programs, one per context
+	 * @param processor the processor, whose contexts are replaced
+	 */
+	public static void assemble(String[] programs, Processor processor)
+	{
+		processor.setContexts(programs.length);
+		for (int i = 0; i < programs.length; i++)
+		{
+			processor.setContext(i);
+			assembleContext(programs[i], processor, processor.getContextBase(i));
+			processor.setContextEnd(i, processor.getMemory().getLastInstructionAddress());
+		}
+		processor.setContext(0);
+	}
+
+	private static void assembleContext(String program, Processor processor, int base)
 	{
 		String noInstructionsString = "Please enter one or more instructions";
 		if (program.trim().isEmpty())
@@ -24,10 +47,11 @@ public final class Assembler
 		}
 		
 		// Resetting static variables
-		processor.clear();
 		tags.clear();
 		fillLabels.clear();
-		instructionAddress = 0;
+		instructions.clear();
+		baseAddress = base;
+		instructionAddress = base;
 		
 		String[] lines = program.toLowerCase().trim().split("\\n+");
 		boolean hasContent = false;
@@ -84,15 +108,15 @@ public final class Assembler
 			
 			if (label.isEmpty())
 			{
-				throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Empty label");
+				throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Empty label");
 			}
 			if (!checkLabelValidity(label))
 			{
-				throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Labels can only contain alphanumeric symbols and '.' or '_'");
+				throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Labels can only contain alphanumeric symbols and '.' or '_'");
 			}
 			if (parts[1].trim().isEmpty())
 			{
-				throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Cannot have a line with just a label");
+				throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Cannot have a line with just a label");
 			}
 
 			cleanLine = parts[1].trim();
@@ -174,7 +198,7 @@ public final class Assembler
 	{
 		if (operands.length != 1)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": .fill requires exactly one operand");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": .fill requires exactly one operand");
 		}
 		
 		String value = operands[0];
@@ -203,13 +227,13 @@ public final class Assembler
 	{
 		if (operands.length != 1)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": .space requires exactly one operand");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": .space requires exactly one operand");
 		}
 		
 		int count = parseInteger(operands[0]);
 		if (count < 1)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": .space count must be positive");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": .space count must be positive");
 		}
 		
 		// Reserve 'count' words of zeros
@@ -254,13 +278,17 @@ public final class Assembler
 		Method m = InstructionSet.getMethod(operation);
 		if (m == null)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": '" + operation + "' is an invalid operation");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": '" + operation + "' is an invalid operation");
+		}
+		if (!InstructionEncoding.canEncode(operation))
+		{
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": '" + operation + "' has no encoding left in 16 bits");
 		}
 		
 		Class<?>[] types = m.getParameterTypes();
 		if (types.length != operands.length)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Invalid number of operands for '" + operation + "'");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Invalid number of operands for '" + operation + "'");
 		}
 		
 		Object[] parameters = new Object[types.length];
@@ -271,7 +299,7 @@ public final class Assembler
 				Register r = processor.getRegisterFile().getRegister(operands[i]);
 				if (r == null)
 				{
-					throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": '" + operands[i] + "' is an invalid register name");
+					throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": '" + operands[i] + "' is an invalid register name");
 				}
 				parameters[i] = r;
 			}
@@ -283,11 +311,15 @@ public final class Assembler
 					// Validate immediate ranges
 					if (operation.equals("lui") && (immediate < 0 || immediate > 0x3ff))
 					{
-						throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Upper immediate must be between 0x000 and 0x3ff");
+						throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Upper immediate must be between 0x000 and 0x3ff");
+					}
+					else if (InstructionEncoding.hasExtensionImmediate(operation) && (immediate < 0 || immediate > InstructionEncoding.EXTENSION_IMMEDIATE_MAX))
+					{
+						throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Extension immediate must be between 0 and " + InstructionEncoding.EXTENSION_IMMEDIATE_MAX);
 					}
 					else if (!operation.equals("lui") && (immediate < -64 || immediate > 63))
 					{
-						throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Signed immediate must be between -64 and 63");
+						throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Signed immediate must be between -64 and 63");
 					}
 					parameters[i] = immediate;
 				}
@@ -300,13 +332,13 @@ public final class Assembler
 					}
 					else
 					{
-						throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Invalid immediate operand: " + operands[i]);
+						throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Invalid immediate operand: " + operands[i]);
 					}
 				}
 			}
 		}
 		
-		processor.getMemory().addInstruction(operation, parameters);
+		instructions.add(new Instruction(instructionAddress, operation, parameters));
 		instructionAddress += 2;
 	}
 
@@ -376,7 +408,7 @@ public final class Assembler
 		Integer expectedOperands = pseudoInstructions.get(operation);
 		if (expectedOperands == null || expectedOperands != operands.length)
 		{
-			throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Invalid number of operands for '" + operation + "'");
+			throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Invalid number of operands for '" + operation + "'");
 		}
 		
 		switch (operation)
@@ -407,7 +439,7 @@ public final class Assembler
 				
 				if (immediate < 0 || immediate > 0xFFFF)
 				{
-					throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Word immediate must be between 0x0000 and 0xFFFF");
+					throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Word immediate must be between 0x0000 and 0xFFFF");
 				}
 				
 				// First instruction: lui
@@ -419,24 +451,22 @@ public final class Assembler
 			}
 			default:
 			{
-				throw new IllegalArgumentException("Line " + (instructionAddress / 2 + 1) + ": Unknown pseudo-instruction: " + operation);
+				throw new IllegalArgumentException("Line " + ((instructionAddress - baseAddress) / 2 + 1) + ": Unknown pseudo-instruction: " + operation);
 			}
 		}
 	}
 
 	/**
-	 * Second pass: resolves all symbolic labels in both instructions and .fill directives
+	 * Second pass: resolves all symbolic labels in both instructions and .fill directives,
+	 * then places the instructions in memory encoded
 	 */
 	private static void resolveSymbolicLabels(Processor processor)
 	{
-		ArrayList<Instruction> instructions = processor.getMemory().getInstructions();
-		
 		// Resolve labels in branch instructions
-		for (int i = 0; i < instructions.size(); i++)
+		for (Instruction instr : instructions)
 		{
-			Instruction instr = instructions.get(i);
 			Object[] operands = instr.getOperands();
-			int currentAddress = i * 2;
+			int currentAddress = instr.getAddress();
 			String operation = instr.getOperation();
 			
 			for (int j = 0; j < operands.length; j++)
@@ -498,14 +528,22 @@ public final class Assembler
 			processor.getMemory().setWord(address, (short)targetAddress);
 		}
 		
+		// Place the instructions in memory, encoded among the data
+		for (Instruction instr : instructions)
+		{
+			processor.getMemory().setInstruction(instr.getAddress(), InstructionEncoding.encode(instr));
+		}
+		
 		// Clear for next assembly
 		fillLabels.clear();
+		instructions.clear();
 	}
 
 	// ==================== Static State ====================
 	
-	// Current address in memory (incremented as we parse)
+	// Current address in memory (incremented as we parse), and where the program began
 	private static int instructionAddress = 0;
+	private static int baseAddress = 0;
 	
 	// Map of label names to their addresses
 	private static HashMap<String, Integer> tags = new HashMap<>();
@@ -513,6 +551,9 @@ public final class Assembler
 	// Map of .fill directive addresses to label names (for deferred resolution)
 	private static HashMap<Integer, String> fillLabels = new HashMap<>();
 	
+	// Instructions parsed, placed in memory once their labels are resolved
+	private static ArrayList<Instruction> instructions = new ArrayList<>();
+	
 	// Pseudo-instructions and their operand counts
 	private static final HashMap<String, Integer> pseudoInstructions = new HashMap<>(
 		Map.of(
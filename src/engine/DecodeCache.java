@@ -0,0 +1,72 @@
+package engine;
+
+import java.util.Arrays;
+
+import engine.storage.Memory;
+import engine.types.Instruction;
+
+/**
+ * Keeps the instructions a hardware context decoded, by address, so that each word is
+ * decoded once however many times it is executed. The instructions name the context's
+ * registers. They are kept in pages matching the memory's, each with the version of the
+ * code its words were fetched at, and a page whose code was written over since is
+ * dropped whole on its next fetch, so that only programs writing over their own code
+ * decode again. The version comes from the instruction cache along with the word, since
+ * another core sharing the memory can write over the code in between.
+ */
+public class DecodeCache {
+	
+	private Memory memory;
+	private RegisterFile registers;
+	private int pageBits;
+	private Instruction[][] pages;
+	private int[] versions;
+	private long decodes;
+	
+	public DecodeCache(Memory memory, RegisterFile registers) {
+		this.memory = memory;
+		this.registers = registers;
+		pageBits = Integer.numberOfTrailingZeros(memory.getPageSize());
+		pages = new Instruction[memory.getSize() >> pageBits][];
+		versions = new int[pages.length];
+	}
+	
+	/**
+	 * Returns the instruction at an address, decoding the word fetched from it unless it
+	 * was already decoded since its code was last written over.
+	 * @param version the version of the code the word was fetched at, as given by the
+	 * instruction cache
+	 * @throws IllegalArgumentException if the word encodes no instruction
+	 */
+	public Instruction get(int address, short word, int version) {
+		int page = address >> pageBits;
+		Instruction[] decoded = pages[page];
+		if (decoded == null) {
+			decoded = pages[page] = new Instruction[1 << (pageBits - 1)];
+			versions[page] = version;
+		} else if (versions[page] != version) {
+			Arrays.fill(decoded, null);
+			versions[page] = version;
+		}
+		
+		int index = (address & ((1 << pageBits) - 1)) >> 1;
+		if (decoded[index] == null) {
+			decoded[index] = InstructionEncoding.decode(address, word, registers);
+			decodes++;
+			
+			// Writing over the word, though it may have been placed as data, must drop it
+			synchronized (memory) {
+				memory.markInstruction(address);
+			}
+		}
+		return decoded[index];
+	}
+	
+	/**
+	 * @return the words decoded, including those decoded again after being written over
+	 */
+	public long getDecodes() {
+		return decodes;
+	}
+	
+}
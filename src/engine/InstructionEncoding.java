@@ -0,0 +1,201 @@
+package engine;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import engine.extensions.InstructionExtension;
+import engine.types.Instruction;
+import engine.types.Register;
+
+/**
+ * Encodes instructions into the 16-bit words memory holds and decodes them back, in the
+ * RiSC-16 formats: the opcode in the top 3 bits, then register A and register B, with
+ * register C in the low 3 bits of add and nand, a signed 7-bit immediate in the low bits
+ * of addi, sw, lw, beq and jalr, and a 10-bit one in the low bits of lui.
+ *
+ * Extensions take the encodings the base set leaves unused. Their instructions on three
+ * registers are told apart by the 4 bits between register B and register C of add and
+ * then of nand, which are 0 for those two. Their instructions on two registers and an
+ * immediate are jalr with an immediate other than 0, whose top 3 bits tell them apart,
+ * so that their immediates only have 4 bits, from 0 to 15. Extensions are numbered in
+ * the order they were added, and their instructions by name.
+ */
+public final class InstructionEncoding {
+	
+	public static final int EXTENSION_IMMEDIATE_MAX = 15;
+	
+	private static final String[] opcodes = {"add", "addi", "nand", "lui", "sw", "lw", "beq", "jalr"};
+	private static final int JALR = 7;
+	
+	// The extensions' instructions on three registers, by the opcode of add or nand and the
+	// function bits, and on two registers and an immediate, by the top bits of the
+	// immediate, with the encoding of each by name and the number of extensions numbered
+	private static String[][] registerFunctions;
+	private static String[] immediateFunctions;
+	private static HashMap<String, Integer> extensionCodes;
+	private static int extensions = -1;
+	
+	// Registers only named for display, so that words can be decoded without a program
+	private static final RegisterFile names = new RegisterFile(0);
+	
+	private InstructionEncoding() {
+		throw new IllegalStateException("Utility class");
+	}
+	
+	/**
+	 * Returns whether an instruction has an encoding, which every base instruction and
+	 * all but the extensions' instructions beyond the encodings left has.
+	 */
+	public static boolean canEncode(String operation) {
+		return Arrays.asList(opcodes).contains(operation) || getExtensionCodes().containsKey(operation);
+	}
+	
+	/**
+	 * Returns whether an instruction comes from an extension and takes an immediate, which
+	 * then only has 4 bits.
+	 */
+	public static boolean hasExtensionImmediate(String operation) {
+		Integer code = getExtensionCodes().get(operation);
+		return code != null && code >> 4 == JALR;
+	}
+	
+	/**
+	 * Encodes an instruction whose labels were resolved, with immediates within range.
+	 */
+	public static short encode(Instruction instruction) {
+		Object[] operands = instruction.getOperands();
+		int opcode = Arrays.asList(opcodes).indexOf(instruction.getOperation());
+		int function = 0;
+		if (opcode == -1) {
+			Integer code = getExtensionCodes().get(instruction.getOperation());
+			if (code == null)
+				throw new IllegalArgumentException("'" + instruction.getOperation() + "' has no encoding");
+			
+			opcode = code >> 4;
+			function = code & 15;
+		}
+		
+		int word = opcode << 13 | ((Register) operands[0]).getNumber() << 10;
+		if (opcode == 3)
+			return (short) (word | (Integer) operands[1] & 0x3ff);
+		
+		word |= ((Register) operands[1]).getNumber() << 7;
+		if (opcode == 0 || opcode == 2)
+			return (short) (word | function << 3 | ((Register) operands[2]).getNumber());
+		
+		if (opcode == JALR)
+			return (short) ((function == 0)? word : word | function << 4 | (Integer) operands[2] & 15);
+		
+		return (short) (word | (Integer) operands[2] & 0x7f);
+	}
+	
+	/**
+	 * Decodes the word at an address into an instruction naming the given registers.
+	 * @throws IllegalArgumentException if the word encodes no instruction
+	 */
+	public static Instruction decode(int address, short word, RegisterFile registers) {
+		int opcode = word >> 13 & 7;
+		Register a = registers.getRegister(word >> 10 & 7);
+		Register b = registers.getRegister(word >> 7 & 7);
+		String operation = opcodes[opcode];
+		Object[] operands;
+		switch (opcode) {
+			case 0:
+			case 2:
+				int function = word >> 3 & 15;
+				if (function != 0)
+					operation = getRegisterFunctions()[opcode / 2][function];
+				operands = new Object[]{a, b, registers.getRegister(word & 7)};
+				break;
+			case 3:
+				operands = new Object[]{a, word & 0x3ff};
+				break;
+			case JALR:
+				if ((word & 0x7f) == 0) {
+					operands = new Object[]{a, b};
+					break;
+				}
+				operation = getImmediateFunctions()[word >> 4 & 7];
+				operands = new Object[]{a, b, word & 15};
+				break;
+			default:
+				operands = new Object[]{a, b, (word << 25) >> 25};
+				break;
+		}
+		
+		if (operation == null)
+			throw new IllegalArgumentException(String.format("Invalid instruction (0x%04X) at address %d", word, address));
+		return new Instruction(address, operation, operands);
+	}
+	
+	/**
+	 * Returns the instruction a word encodes as text, or the word in hexadecimal if none.
+	 */
+	public static String format(short word, int operation, int operand) {
+		try {
+			return decode(0, word, names).format(operation, operand);
+		} catch (IllegalArgumentException ex) {
+			return String.format("0x%04X", word);
+		}
+	}
+	
+	private static String[][] getRegisterFunctions() {
+		getExtensionCodes();
+		return registerFunctions;
+	}
+	
+	private static String[] getImmediateFunctions() {
+		getExtensionCodes();
+		return immediateFunctions;
+	}
+	
+	/**
+	 * Numbers the extensions' instructions again whenever an extension was added since.
+	 */
+	private static synchronized HashMap<String, Integer> getExtensionCodes() {
+		ArrayList<Class<? extends InstructionExtension>> added = InstructionSet.getExtensions();
+		if (added.size() == extensions)
+			return extensionCodes;
+		
+		String[][] registerTable = new String[2][16];
+		String[] immediateTable = new String[8];
+		HashMap<String, Integer> codes = new HashMap<String, Integer>();
+		int registerCount = 0, immediateCount = 0;
+		for (Class<? extends InstructionExtension> extension : added) {
+			Method[] methods = extension.getDeclaredMethods();
+			Arrays.sort(methods, Comparator.comparing(Method::getName));
+			for (Method method : methods) {
+				if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers()) || 
+						method.getReturnType() != Object[].class)
+					continue;
+				
+				Class<?>[] types = method.getParameterTypes();
+				if (types.length != 3 || types[0] != Register.class || types[1] != Register.class)
+					continue;
+				
+				if (types[2] == Register.class && registerCount < 30) {
+					int opcode = (registerCount < 15)? 0 : 2;
+					int function = registerCount % 15 + 1;
+					registerTable[opcode / 2][function] = method.getName();
+					codes.put(method.getName(), opcode << 4 | function);
+					registerCount++;
+				} else if (types[2] == int.class && immediateCount < 7) {
+					immediateCount++;
+					immediateTable[immediateCount] = method.getName();
+					codes.put(method.getName(), JALR << 4 | immediateCount);
+				}
+			}
+		}
+		
+		registerFunctions = registerTable;
+		immediateFunctions = immediateTable;
+		extensionCodes = codes;
+		extensions = added.size();
+		return codes;
+	}
+	
+}
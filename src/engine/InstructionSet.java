@@ -1,16 +1,49 @@
 package engine;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
 
+import engine.extensions.ArithmeticExtension;
+import engine.extensions.InstructionExtension;
 import engine.types.FunctionType;
 import engine.types.Register;
 
 
 public class InstructionSet {
 	
+	// Extensions whose instructions are added to the base ones, and every instruction's method by name
+	private static ArrayList<Class<? extends InstructionExtension>> extensions = new ArrayList<Class<? extends InstructionExtension>>();
+	private static HashMap<String, Method> methods;
+	
+	static {
+		addExtension(ArithmeticExtension.class);
+	}
+	
 	private Processor processor;
+	private HashMap<Class<?>, InstructionExtension> instances;
 	
 	public InstructionSet(Processor processor) {
 		this.processor = processor;
+		instances = new HashMap<Class<?>, InstructionExtension>();
+		for (Class<? extends InstructionExtension> extension : getExtensions()) {
+			InstructionExtension instance;
+			try {
+				instance = extension.getDeclaredConstructor().newInstance();
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("Extension " + extension.getSimpleName() + " can not be created");
+			}
+			instance.setProcessor(processor);
+			instances.put(extension, instance);
+		}
+	}
+	
+	/**
+	 * Returns the object to invoke an instruction's method on, which is either this or
+	 * the extension declaring it.
+	 */
+	public Object getTarget(Method method) {
+		return (method.getDeclaringClass() == InstructionSet.class)? this : instances.get(method.getDeclaringClass());
 	}
 	
 	public Object[] add(Register r1, Register r2, Register r3) {
@@ -36,19 +69,31 @@ public class InstructionSet {
 	public Object[] sw(Register r1, Register r2, int immediate) {
 		int effectiveAddress = r2.getValue() + immediate;
 				
-		int time1 = processor.getDataAccessTime();
-		processor.getDataCache(0).setData(effectiveAddress, Helpers.toBytes(r1.getValue()));
-		int time2 = processor.getDataAccessTime();
-		return new Object[]{FunctionType.STORE, -1, effectiveAddress, time2 - time1};
+		// Cores sharing the memory access it one at a time, so that the access times taken
+		// are those of this access alone
+		int[] times;
+		synchronized (processor.getMemory()) {
+			long[] times1 = processor.getDataAccessTimes();
+			// A store down a wrong path never commits, and only brings its line in
+			if (processor.isSpeculating())
+				processor.getDataCache(0).getData(effectiveAddress, 2);
+			else
+				processor.getDataCache(0).setData(effectiveAddress, Helpers.toBytes(r1.getValue()));
+			times = getAccessTimes(times1, processor.getDataAccessTimes());
+		}
+		return new Object[]{FunctionType.STORE, -1, effectiveAddress, getTotal(times), times};
 	}
 		
 	public Object[] lw(Register r1, Register r2, int immediate) {
 		int effectiveAddress = r2.getValue() + immediate;
 		
-		int time1 = processor.getDataAccessTime();
-		r1.setValue(Helpers.toWord(processor.getDataCache(0).getData(effectiveAddress, 2)));
-		int time2 = processor.getDataAccessTime();
-		return new Object[]{FunctionType.LOAD, r1.getNumber(), effectiveAddress, time2 - time1};
+		int[] times;
+		synchronized (processor.getMemory()) {
+			long[] times1 = processor.getDataAccessTimes();
+			r1.setValue(Helpers.toWord(processor.getDataCache(0).getData(effectiveAddress, 2)));
+			times = getAccessTimes(times1, processor.getDataAccessTimes());
+		}
+		return new Object[]{FunctionType.LOAD, r1.getNumber(), effectiveAddress, getTotal(times), times};
 	}
 		
 	public Object[] beq(Register r1, Register r2, int immediate) {
@@ -64,13 +109,65 @@ public class InstructionSet {
 		return new Object[]{FunctionType.JUMP_AND_LINK, r1.getNumber(), (int)r2.getValue()};
 	}
 
-	public static Method getMethod(String operation) {
-		Method[] methods = InstructionSet.class.getDeclaredMethods();
-		for (Method method : methods) {
-			if (method.getName().equals(operation))
-				return method;
+	private static int[] getAccessTimes(long[] before, long[] after) {
+		int[] times = new int[after.length];
+		for (int i = 0; i < times.length; i++)
+			times[i] = (int) (after[i] - before[i]);
+		return times;
+	}
+	
+	private static int getTotal(int[] times) {
+		int total = 0;
+		for (int time : times)
+			total += time;
+		return total;
+	}
+	
+	public static synchronized Method getMethod(String operation) {
+		if (methods == null) {
+			methods = new HashMap<String, Method>();
+			addMethods(InstructionSet.class);
+			for (Class<? extends InstructionExtension> extension : extensions)
+				addMethods(extension);
+		}
+		return methods.get(operation);
+	}
+	
+	/**
+	 * Adds the instructions of an extension to the ones the assembler accepts and the
+	 * processor executes.
+	 * @see InstructionExtension
+	 */
+	public static synchronized void addExtension(Class<? extends InstructionExtension> extension) {
+		if (extensions.contains(extension))
+			return;
+		
+		getMethod("");
+		HashMap<String, Method> previous = new HashMap<String, Method>(methods);
+		try {
+			addMethods(extension);
+		} catch (IllegalArgumentException ex) {
+			methods = previous;
+			throw ex;
+		}
+		extensions.add(extension);
+	}
+	
+	public static synchronized ArrayList<Class<? extends InstructionExtension>> getExtensions() {
+		return new ArrayList<Class<? extends InstructionExtension>>(extensions);
+	}
+	
+	private static void addMethods(Class<?> type) {
+		for (Method method : type.getDeclaredMethods()) {
+			if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers()) || 
+					method.getReturnType() != Object[].class)
+				continue;
+			
+			if (methods.containsKey(method.getName()))
+				throw new IllegalArgumentException("Instruction '" + method.getName() + "' is already defined");
+			
+			methods.put(method.getName(), method);
 		}
-		return null;
 	}
 	
 }
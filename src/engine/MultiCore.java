@@ -0,0 +1,182 @@
+package engine;
+
+import java.util.concurrent.Phaser;
+
+import engine.storage.CoherenceBus;
+import engine.storage.DataCache;
+import engine.storage.Memory;
+import engine.timing.ScheduleStatistics;
+import engine.types.Addressable;
+import engine.types.WritePolicy;
+
+/**
+ * Several cores, each a processor with an instruction cache and a first data cache level
+ * of its own, sharing the levels below and the memory, with the first levels kept
+ * coherent by a snooping bus. Each core runs its own program on a host thread of its own,
+ * in quanta of cycles: a core reaching the end of a quantum waits for the others to reach
+ * it too, so that the cores' accesses to the shared levels interleave about as they would
+ * in time. A shorter quantum interleaves them more closely, at the cost of waiting more.
+ */
+public class MultiCore {
+	
+	public static final int MAX_CORES = 8;
+	private static final int QUANTUM = 1000;
+	
+	private Processor[] cores;
+	private Memory memory;
+	private DataCache[] sharedLevels;
+	private CoherenceBus bus;
+	private int quantum;
+	
+	/**
+	 * @param cacheConfig the configuration of the memory and the caches, as taken by a
+	 * processor, of which the instruction cache and the first data cache level are each
+	 * core's own and the other levels shared
+	 */
+	public MultiCore(int cores, int[][] cacheConfig, int[][] unitsConfig) {
+		if (cores < 1 || cores > MAX_CORES)
+			throw new IllegalArgumentException("Cores must be between 1 and " + MAX_CORES);
+		
+		if (cacheConfig.length < 3)
+			throw new IllegalArgumentException("Invalid configuration");
+		
+		memory = new Memory(cacheConfig[0][0], cacheConfig[0][3]);
+		Addressable prev = memory;
+		sharedLevels = new DataCache[cacheConfig.length - 3];
+		for (int i = cacheConfig.length - 1; i >= 3; i--) {
+			sharedLevels[i - 3] = new DataCache(cacheConfig[i][0], cacheConfig[i][1], cacheConfig[i][2], cacheConfig[i][3]);
+			sharedLevels[i - 3].setWritePolicies(WritePolicy.values()[cacheConfig[i][4]], WritePolicy.values()[cacheConfig[i][5]]);
+			sharedLevels[i - 3].setNextCacheLevel(prev);
+			prev = sharedLevels[i - 3];
+		}
+		
+		// Each core gets an even part of the memory registers can address for its programs
+		bus = new CoherenceBus();
+		int span = (Math.min(memory.getSize(), 0x8000) / cores) & ~1;
+		this.cores = new Processor[cores];
+		for (int i = 0; i < cores; i++) {
+			this.cores[i] = new Processor(cacheConfig, unitsConfig, memory, sharedLevels, i * span, span);
+			bus.attach(this.cores[i].getDataCache(0));
+		}
+		quantum = QUANTUM;
+	}
+	
+	/**
+	 * Drops every program and assembles each given one into a core of its own.
+	 * @param programs the programs, one per core
+	 */
+	public void assemble(String[] programs) {
+		if (programs.length != cores.length)
+			throw new IllegalArgumentException("Expected " + cores.length + " programs, one per core");
+		
+		clear();
+		// The cores share the memory, each placing its program in the part of it set aside
+		// for it when it was created
+		for (int i = 0; i < cores.length; i++)
+			Assembler.assemble(programs[i], cores[i]);
+	}
+	
+	/**
+	 * Executes every core's program to its end, each core on a host thread of its own.
+	 * @throws IllegalArgumentException what the first core to fail failed with, once the
+	 * others have ended
+	 */
+	public void execute() throws IllegalArgumentException {
+		final Phaser phaser = new Phaser(cores.length);
+		final RuntimeException[] failures = new RuntimeException[cores.length];
+		Thread[] threads = new Thread[cores.length];
+		for (int i = 0; i < cores.length; i++) {
+			final int core = i;
+			threads[i] = new Thread(() -> {
+				try {
+					for (long end = quantum; !cores[core].executeUntil(end); end += quantum)
+						phaser.arriveAndAwaitAdvance();
+				} catch (RuntimeException ex) {
+					failures[core] = ex;
+				} finally {
+					phaser.arriveAndDeregister();
+				}
+			}, "Core " + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		
+		boolean interrupted = false;
+		for (Thread thread : threads)
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+		
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		
+		for (RuntimeException failure : failures)
+			if (failure != null)
+				throw failure;
+	}
+	
+	/**
+	 * Lists each core's instructions, cycles and IPC, with the hit ratio of its first data
+	 * cache level and how many of its lines the other cores invalidated, followed by the
+	 * traffic on the coherence bus.
+	 */
+	public Object[] display() {
+		String[] headers = {"Core", "Instructions", "Cycles", "IPC", "L1 Hit Ratio", "Invalidated"};
+		String[][] data = new String[cores.length][6];
+		for (int i = 0; i < cores.length; i++) {
+			ScheduleStatistics statistics = cores[i].getUnitSet().getStatistics();
+			DataCache cache = cores[i].getDataCache(0);
+			data[i][0] = i + "";
+			data[i][1] = statistics.getInstructions() + "";
+			data[i][2] = statistics.getCycles() + "";
+			data[i][3] = String.format("%.2f", statistics.getIpc());
+			data[i][4] = String.format("%.2f", (cache.getAccesses() == 0)? 0 : cache.getHits() * 100.0 / cache.getAccesses()) + "%";
+			data[i][5] = cache.getInvalidations() + "";
+		}
+		return new Object[]{data, headers, bus.displayStatistics()};
+	}
+	
+	/**
+	 * Sets the cycles each core runs before waiting for the others.
+	 */
+	public void setQuantum(int quantum) {
+		if (quantum < 1)
+			throw new IllegalArgumentException("Quantum must be at least 1 cycle");
+		
+		this.quantum = quantum;
+	}
+	
+	public int getQuantum() {
+		return quantum;
+	}
+	
+	public Processor getCore(int core) {
+		return cores[core];
+	}
+	
+	public int getCores() {
+		return cores.length;
+	}
+	
+	public CoherenceBus getBus() {
+		return bus;
+	}
+	
+	public Memory getMemory() {
+		return memory;
+	}
+	
+	public void clear() {
+		memory.clear();
+		for (DataCache cache : sharedLevels)
+			cache.clear();
+		bus.clear();
+		for (Processor core : cores)
+			core.clear();
+	}
+	
+}
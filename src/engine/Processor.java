@@ -1,26 +1,99 @@
 package engine;
 import java.lang.reflect.Method;
 
+import engine.prediction.BranchTrace;
 import engine.storage.DataCache;
 import engine.storage.InstructionCache;
 import engine.storage.Memory;
 import engine.types.Addressable;
+import engine.types.FetchPolicy;
 import engine.types.FunctionType;
 import engine.types.Instruction;
+import engine.types.Register;
 import engine.types.WritePolicy;
 
 public class Processor {
 	
+	private static final int MAX_CONTEXTS = 8;
+	
 	private RegisterFile registerFile;
 	private Memory memory;
 	private DataCache[] dataCache;
 	private InstructionCache instructionCache;
 	private UnitSet unitSet;
+	private BranchTrace branchTrace;
+	private boolean pipelined;
+	
+	// Hardware contexts, each running a program assembled from its own base address with
+	// registers of its own, the instructions each decoded, the last instruction address of
+	// each program, the context executing and the last one fetched from
+	private RegisterFile[] contexts;
+	private DecodeCache[] decodeCaches;
+	private int[] contextEnds;
+	private int context;
+	private int lastFetched;
+	private FetchPolicy fetchPolicy;
+	
+	// Cycles each context runs for before the next one takes its turn, or 0 to fetch from
+	// all of them together, the cycles a switch takes, the cycle the running context's
+	// turn ends in, whether the next instruction is the first after a switch, and how many
+	// switches were made
+	private int timeSlice;
+	private int switchCost;
+	private long sliceEnd;
+	private boolean switching;
+	private long switches;
+	
+	// Whether this is a core sharing the memory and the data cache levels below the first
+	// with others, and the part of the memory its programs are placed in
+	private boolean sharedMemory;
+	private int origin;
+	private int span;
+	
+	// Whether mispredicted paths are executed in a register file of their own, which the
+	// instructions use while speculating, and what those paths did
+	private boolean wrongPath;
+	private boolean speculating;
+	private RegisterFile shadow;
+	private long wrongPaths;
+	private long wrongPathInstructions;
+	private long wrongPathFetchMisses;
+	private long wrongPathDataMisses;
+	private long wrongPathAccessTime;
 	
 	public Processor(int[][] cacheConfig, int[][] unitsConfig) {
 		configureStorage(cacheConfig);
+		initialize(unitsConfig);
+	}
+	
+	/**
+	 * Creates a core of a multi-core processor, with an instruction cache and a first data
+	 * cache level of its own, as configured, over the given shared levels and memory. Its
+	 * programs are placed in the given part of the memory, which no other core uses.
+	 */
+	Processor(int[][] cacheConfig, int[][] unitsConfig, Memory memory, DataCache[] sharedLevels, int origin, int span) {
+		this.memory = memory;
+		instructionCache = new InstructionCache(cacheConfig[1][0], cacheConfig[1][1], cacheConfig[1][2], cacheConfig[1][3], memory);
+		dataCache = new DataCache[sharedLevels.length + 1];
+		dataCache[0] = new DataCache(cacheConfig[2][0], cacheConfig[2][1], cacheConfig[2][2], cacheConfig[2][3]);
+		dataCache[0].setWritePolicies(WritePolicy.values()[cacheConfig[2][4]], WritePolicy.values()[cacheConfig[2][5]]);
+		dataCache[0].setNextCacheLevel((sharedLevels.length > 0)? sharedLevels[0] : memory);
+		System.arraycopy(sharedLevels, 0, dataCache, 1, sharedLevels.length);
+		sharedMemory = true;
+		this.origin = origin;
+		this.span = span;
+		initialize(unitsConfig);
+	}
+	
+	private void initialize(int[][] unitsConfig) {
 		unitSet = new UnitSet(unitsConfig);
 		registerFile = new RegisterFile(0);
+		contexts = new RegisterFile[]{registerFile};
+		decodeCaches = new DecodeCache[]{new DecodeCache(memory, registerFile)};
+		contextEnds = new int[1];
+		fetchPolicy = FetchPolicy.ROUND_ROBIN;
+		shadow = new RegisterFile(0);
+		pipelined = Runtime.getRuntime().availableProcessors() > 1;
 	}
 	
 	public void configureStorage(int[][] config) {
@@ -39,13 +112,72 @@ public class Processor {
 		}
 	}
 			
+	/**
+	 * Executes the next instruction, or the whole program unless stepped. A whole program
+	 * is scheduled on another thread while it executes, when pipelined, and the unit set
+	 * has scheduled every executed instruction once this returns. Programs are not
+	 * pipelined while executing wrong paths or with more than one hardware context, since
+	 * the paths and the contexts fetched from follow the schedule of the unit set. With
+	 * more than one, the next instruction is fetched from the context the fetch policy
+	 * picks, or from the one whose turn it is when time slicing, until every context's
+	 * program has ended.
+	 */
 	public boolean execute(boolean stepped) throws IllegalArgumentException {
+		if (stepped || !pipelined || wrongPath || contexts.length > 1)
+			return execute(stepped, null, -1);
+		
+		SchedulerThread scheduler = new SchedulerThread(unitSet);
+		scheduler.start();
+		boolean finished;
+		try {
+			finished = execute(false, scheduler, -1);
+		} catch (RuntimeException ex) {
+			// The instructions executed before the fault are still scheduled, but what
+			// scheduling them fails with must not hide the fault
+			try {
+				scheduler.finish();
+			} catch (RuntimeException failure) {
+				ex.addSuppressed(failure);
+			}
+			throw ex;
+		}
+		scheduler.finish();
+		return finished;
+	}
+	
+	/**
+	 * Executes instructions until the last one executed commits in the given cycle or
+	 * later, or the program ends. Nothing is pipelined, since the unit set schedules each
+	 * instruction as it is executed to tell its cycle.
+	 * @return whether the program ended
+	 */
+	public boolean executeUntil(long cycle) throws IllegalArgumentException {
+		return execute(false, null, cycle);
+	}
+	
+	private boolean execute(boolean stepped, SchedulerThread scheduler, long until) {
 		InstructionSet instructionSet = new InstructionSet(this);
 		Instruction instruction;
 		int oldPc;
 		do {
+			if (until != -1 && unitSet.getStatistics().getCycles() >= until)
+				return false;
+			
+			if (contexts.length > 1) {
+				int next = (timeSlice > 0)? getNextSlice() : getNextContext();
+				if (next == -1)
+					return true;
+				setContext(next);
+			}
+			
 			oldPc = registerFile.getPc();
-			instruction = instructionCache.getInstruction(oldPc).clone();
+			short word = instructionCache.getWord(oldPc);
+			instruction = decodeCaches[context].get(oldPc, word, instructionCache.getVersion()).clone();
+			instruction.setThread(context);
+			if (switching) {
+				instruction.setSwitchCycles(switchCost);
+				switching = false;
+			}
 	
 			registerFile.incrementPc(2);
 			
@@ -53,7 +185,7 @@ public class Processor {
 			Object[] data;
 			
 			try {
-				 data = (Object[])method.invoke(instructionSet, instruction.getOperands());
+				 data = (Object[])method.invoke(instructionSet.getTarget(method), instruction.getOperands());
 			} catch (Exception ex) {
 				registerFile.setPc(oldPc);
 				throw new IllegalArgumentException(ex.getCause().getMessage());
@@ -63,21 +195,82 @@ public class Processor {
 			instruction.setDestination((Integer)data[1]);
 			instruction.setEffectiveAddress((Integer)data[2]);
 			
-			if (data.length == 4)
+			if (data.length >= 4)
 				instruction.setExecutionTime((Integer)data[3]);
 			
-			unitSet.addExecutedInstruction(instruction);
+			if (data.length == 5)
+				instruction.setAccessTimes((int[])data[4]);
 			
-			if (registerFile.getPc() > memory.getLastInstructionAddress())
+			// The trace is added to first, since the instruction is no longer this thread's once put
+			if (branchTrace != null)
+				branchTrace.add(instruction);
+			if (scheduler != null)
+				scheduler.put(instruction);
+			else
+				unitSet.addExecutedInstruction(instruction);
+			
+			if (wrongPath && unitSet.getWrongPath() != -1)
+				executeWrongPath(instructionSet, unitSet.getWrongPath());
+			
+			if (!isRunning()) {
+				setContext(0);
 				return true;
+			}
 		
 		} while (!stepped);
 		
 		return false;
 	}
+	
+	/**
+	 * Fetches and executes down a mispredicted path, for as many instructions as the ROB
+	 * holds, in the shadow register file starting from the architectural one. Its loads
+	 * and stores go through the caches, but stores do not write, so that the path only
+	 * leaves its traces in the caches. It ends early at the end of the program or at an
+	 * instruction that faults, which would be squashed before raising anything.
+	 */
+	private void executeWrongPath(InstructionSet instructionSet, int pc) {
+		RegisterFile architectural = registerFile;
+		shadow.copy(architectural);
+		shadow.setPc(pc);
+		registerFile = shadow;
+		speculating = true;
+		
+		long fetches = instructionCache.getAccesses() - instructionCache.getHits();
+		long misses = dataCache[0].getAccesses() - dataCache[0].getHits();
+		long accessTime = getDataAccessTime();
+		int robSize = unitSet.getConfiguration()[0][0];
+		try {
+			for (int i = 0; i < robSize && shadow.getPc() >= getContextBase(context) && shadow.getPc() <= getContextEnd(context); i++) {
+				short word = instructionCache.getWord(shadow.getPc());
+				Instruction instruction = decodeCaches[context].get(shadow.getPc(), word, instructionCache.getVersion());
+				shadow.incrementPc(2);
+				
+				// The operands name the architectural registers, which stand for the shadow ones
+				Object[] operands = instruction.getOperands().clone();
+				for (int j = 0; j < operands.length; j++)
+					if (operands[j] instanceof Register register)
+						operands[j] = shadow.getRegister(register.getNumber());
+				
+				Method method = InstructionSet.getMethod(instruction.getOperation());
+				wrongPathInstructions++;
+				method.invoke(instructionSet.getTarget(method), operands);
+			}
+		} catch (Exception ex) {
+			// The path ends at the faulting instruction
+		} finally {
+			registerFile = architectural;
+			speculating = false;
+		}
+		
+		wrongPaths++;
+		wrongPathFetchMisses += instructionCache.getAccesses() - instructionCache.getHits() - fetches;
+		wrongPathDataMisses += dataCache[0].getAccesses() - dataCache[0].getHits() - misses;
+		wrongPathAccessTime += getDataAccessTime() - accessTime;
+	}
 		
-	public int getDataAccessTime() {
-		int accessTime = 0;
+	public long getDataAccessTime() {
+		long accessTime = 0;
 		for (int i = 0; i < dataCache.length; i++)
 			accessTime += dataCache[i].getAccesses() * dataCache[i].getAccessTime();
 
@@ -85,10 +278,230 @@ public class Processor {
 		return accessTime;
 	}
 	
+	/**
+	 * Returns the data access time spent so far in each cache level, from the first, and
+	 * in memory last.
+	 */
+	public long[] getDataAccessTimes() {
+		long[] accessTimes = new long[dataCache.length + 1];
+		for (int i = 0; i < dataCache.length; i++)
+			accessTimes[i] = dataCache[i].getAccesses() * dataCache[i].getAccessTime();
+		
+		accessTimes[dataCache.length] = memory.getDataAccesses() * memory.getAccessTime();
+		return accessTimes;
+	}
+	
+	/**
+	 * Picks the context to fetch from next among those whose program has not ended. One
+	 * waiting for a mispredicted instruction to resolve is passed over for one that can
+	 * issue earlier, and among those that can issue as early, round robin takes them in
+	 * turn and ICOUNT the one with the fewest instructions waiting to execute.
+	 */
+	private int getNextContext() {
+		int next = -1;
+		long nextResume = 0;
+		int nextWaiting = 0;
+		for (int i = 1; i <= contexts.length; i++) {
+			int candidate = (lastFetched + i) % contexts.length;
+			if (!isRunning(candidate))
+				continue;
+			
+			long resume = unitSet.getResumeCycle(candidate);
+			int waiting = (fetchPolicy == FetchPolicy.ICOUNT)? unitSet.getWaiting(candidate) : 0;
+			if (next == -1 || resume < nextResume || (resume == nextResume && waiting < nextWaiting)) {
+				next = candidate;
+				nextResume = resume;
+				nextWaiting = waiting;
+			}
+		}
+		lastFetched = next;
+		return next;
+	}
+	
+	/**
+	 * Keeps fetching from the running context until its turn or its program ends, then
+	 * switches to the next one in turn whose program has not ended. The turn of the one
+	 * switched to starts once the switch is over.
+	 */
+	private int getNextSlice() {
+		long cycles = unitSet.getStatistics().getCycles();
+		if (isRunning(context) && cycles < sliceEnd)
+			return context;
+		
+		for (int i = 1; i <= contexts.length; i++) {
+			int candidate = (context + i) % contexts.length;
+			if (!isRunning(candidate))
+				continue;
+			
+			if (candidate != context) {
+				switches++;
+				switching = true;
+			}
+			sliceEnd = cycles + switchCost + timeSlice;
+			return candidate;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns whether the program of any context has not ended yet.
+	 */
+	private boolean isRunning() {
+		for (int i = 0; i < contexts.length; i++)
+			if (isRunning(i))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Returns whether the PC of a context is still within its program. A single program
+	 * ends only once past its last instruction, as it always did.
+	 */
+	private boolean isRunning(int context) {
+		int pc = contexts[context].getPc();
+		if (contexts.length == 1 && !sharedMemory)
+			return pc <= memory.getLastInstructionAddress();
+		
+		return pc >= getContextBase(context) && pc <= contextEnds[context];
+	}
+	
+	/**
+	 * Summarizes the wrong paths executed: how many, their instructions, their misses in
+	 * the instruction cache and the first data cache and the data access time they took.
+	 * Their effect on the correct path shows in its schedule, against a run without them.
+	 */
+	public String displayWrongPath() {
+		return String.format("Wrong    : %d Paths, %d Instructions\nPolluted : %d Fetch, %d Data Misses, %d Access Cycles",
+				wrongPaths, wrongPathInstructions, wrongPathFetchMisses, wrongPathDataMisses, wrongPathAccessTime);
+	}
+	
+	/**
+	 * Summarizes how the contexts shared the core: the switches made when time slicing,
+	 * and the lines each data cache level evicted, in all and that another context's
+	 * program brought in. The cycles each program ran for are among the unit set's
+	 * statistics.
+	 */
+	public String displayContexts() {
+		String data = (timeSlice > 0)? String.format("Switches : %d, %d Cycles Each\n", switches, switchCost) : "";
+		for (int i = 0; i < dataCache.length; i++)
+			data += String.format("L%d       : %d Evictions, %d Across Programs\n", i + 1, dataCache[i].getEvictions(), dataCache[i].getForeignEvictions());
+		return data.trim();
+	}
+	
 	public RegisterFile getRegisterFile() {
 		return registerFile;
 	}
 	
+	public RegisterFile getRegisterFile(int context) {
+		return contexts[context];
+	}
+	
+	/**
+	 * Returns the instructions a context decoded, which name its registers.
+	 */
+	public DecodeCache getDecodeCache(int context) {
+		return decodeCaches[context];
+	}
+	
+	/**
+	 * Drops every program and sets up the given number of hardware contexts, each with
+	 * registers of its own, starting from its base address. They share the caches and
+	 * the units, which schedule their instructions interleaved.
+	 */
+	public void setContexts(int contexts) {
+		if (contexts < 1 || contexts > MAX_CONTEXTS)
+			throw new IllegalArgumentException("Hardware contexts must be between 1 and " + MAX_CONTEXTS);
+		
+		RegisterFile[] files = new RegisterFile[contexts];
+		files[0] = this.contexts[0];
+		for (int i = 1; i < contexts; i++)
+			files[i] = new RegisterFile(0);
+		this.contexts = files;
+		contextEnds = new int[contexts];
+		unitSet.clear();
+		unitSet.setThreads(contexts);
+		clear();
+	}
+	
+	public int getContexts() {
+		return contexts.length;
+	}
+	
+	/**
+	 * Makes the given context the one executing, whose registers the instructions use.
+	 */
+	public void setContext(int context) {
+		this.context = context;
+		registerFile = contexts[context];
+		if (contexts.length > 1)
+			for (DataCache cache : dataCache)
+				cache.setOwner(context);
+	}
+	
+	public int getContext() {
+		return context;
+	}
+	
+	/**
+	 * Returns the address a context's program is assembled from. The contexts split the
+	 * memory registers can address evenly, since jumps only reach the lower 32KB, or the
+	 * part of it a core is given.
+	 */
+	public int getContextBase(int context) {
+		int size = (sharedMemory)? span : Math.min(memory.getSize(), 0x8000);
+		return origin + context * (size / contexts.length) & ~1;
+	}
+	
+	/**
+	 * Returns the address of the last instruction of a context's program.
+	 */
+	public int getContextEnd(int context) {
+		return (contexts.length == 1 && !sharedMemory)? memory.getLastInstructionAddress() : contextEnds[context];
+	}
+	
+	void setContextEnd(int context, int address) {
+		contextEnds[context] = address;
+	}
+	
+	public void setFetchPolicy(FetchPolicy fetchPolicy) {
+		this.fetchPolicy = fetchPolicy;
+	}
+	
+	public FetchPolicy getFetchPolicy() {
+		return fetchPolicy;
+	}
+	
+	/**
+	 * Makes the contexts take turns on the core, each for the given cycles, as programs
+	 * time-sliced by an operating system, rather than be fetched from together. A switch
+	 * puts away the registers and PC of the running program and brings back those of the
+	 * next, which issues its first instruction once every earlier one has committed and
+	 * the switch cost has passed. A time slice of 0 fetches from all of them together.
+	 */
+	public void setTimeSlice(int timeSlice, int switchCost) {
+		if (timeSlice < 0)
+			throw new IllegalArgumentException("Time slice can not be negative");
+		
+		if (switchCost < 1)
+			throw new IllegalArgumentException("Context switches must take at least 1 cycle");
+		
+		this.timeSlice = timeSlice;
+		this.switchCost = switchCost;
+		sliceEnd = timeSlice;
+	}
+	
+	public int getTimeSlice() {
+		return timeSlice;
+	}
+	
+	public int getSwitchCost() {
+		return switchCost;
+	}
+	
+	public long getSwitches() {
+		return switches;
+	}
+	
 	public Memory getMemory() {
 		return memory;
 	}
@@ -107,13 +520,87 @@ public class Processor {
 		return unitSet;
 	}
 	
+	/**
+	 * Sets whether whole programs are scheduled on another thread as they execute, which
+	 * only pays off with more than one processor.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+	
+	public boolean isPipelined() {
+		return pipelined;
+	}
+	
+	/**
+	 * Sets whether each mispredicted branch or jump is followed by executing down the path
+	 * the front end predicted, as the speculating core would until the branch resolves.
+	 * Changing the predictor afterwards does not change the paths executed.
+	 */
+	public void setWrongPath(boolean wrongPath) {
+		this.wrongPath = wrongPath;
+	}
+	
+	public boolean isWrongPath() {
+		return wrongPath;
+	}
+	
+	/**
+	 * Returns whether the instruction executing is down a wrong path, so that it must not
+	 * change memory.
+	 */
+	public boolean isSpeculating() {
+		return speculating;
+	}
+	
+	/**
+	 * Starts or stops recording the outcomes of executed branches and jumps, so that
+	 * branch predictors can be compared over a run without executing it again.
+	 */
+	public void setBranchCapture(boolean capture) {
+		if (!capture)
+			branchTrace = null;
+		else if (branchTrace == null)
+			branchTrace = new BranchTrace();
+	}
+	
+	/**
+	 * @return the recorded branch outcomes, or null if not capturing them
+	 */
+	public BranchTrace getBranchTrace() {
+		return branchTrace;
+	}
+	
 	public void clear() {
-		registerFile.clear(0);
+		for (int i = 0; i < contexts.length; i++) {
+			contexts[i].clear(getContextBase(i));
+			contextEnds[i] = getContextBase(i) - 2;
+		}
+		setContext(0);
+		lastFetched = contexts.length - 1;
+		sliceEnd = timeSlice;
+		switching = false;
+		switches = 0;
 		unitSet.clear();
-		memory.clear();
+		if (branchTrace != null)
+			branchTrace.clear();
 		instructionCache.clear();
-		for (DataCache cache : dataCache)
-			cache.clear();
+		decodeCaches = new DecodeCache[contexts.length];
+		for (int i = 0; i < contexts.length; i++)
+			decodeCaches[i] = new DecodeCache(memory, contexts[i]);
+		// A core leaves the memory and the shared levels to the processor it is part of
+		if (sharedMemory) {
+			dataCache[0].clear();
+		} else {
+			memory.clear();
+			for (DataCache cache : dataCache)
+				cache.clear();
+		}
+		wrongPaths = 0;
+		wrongPathInstructions = 0;
+		wrongPathFetchMisses = 0;
+		wrongPathDataMisses = 0;
+		wrongPathAccessTime = 0;
 	}
 	
 }
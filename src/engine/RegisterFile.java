@@ -9,7 +9,9 @@ public class RegisterFile {
 
 	private int pc;
 	private ArrayList<Register> registers;
-	private HashSet<Integer> changedRegisters;
+	
+	// A bit per register changed since the changes were last cleared
+	private int changedRegisters;
 	private boolean r0AttemptedWrite;
 	
 	public RegisterFile(int instructionsStartAddress) {
@@ -17,7 +19,6 @@ public class RegisterFile {
 		for (int i = 0; i < 8; i++)
 			registers.add(new Register(i, i != 0, this));
 		pc = instructionsStartAddress;
-		changedRegisters = new HashSet<>();
 		r0AttemptedWrite = false;
 	}
 	
@@ -29,6 +30,20 @@ public class RegisterFile {
 		return null;
 	}
 	
+	public Register getRegister(int number) {
+		return registers.get(number);
+	}
+	
+	/**
+	 * Takes the PC and the value of every register from another register file.
+	 */
+	public void copy(RegisterFile other) {
+		for (int i = 1; i < registers.size(); i++)
+			registers.get(i).setValue(other.registers.get(i).getValue());
+		pc = other.pc;
+		clearChanges();
+	}
+	
 	public Object[] displayRegisters(boolean hex) {
 		String[] headers = {"Register", "Word"}; 
 		String[][] data = new String[registers.size()][2];
@@ -37,7 +52,11 @@ public class RegisterFile {
 			data[i][0] = r.getName();
 			data[i][1] = String.format((hex)? "0x%04X" : "%d", r.getValue());
 		}
-		return new Object[]{data, headers, String.format("\nPC : " + ((hex)? "0x%04X" : "%d"), pc), new HashSet<>(changedRegisters), r0AttemptedWrite};
+		HashSet<Integer> changed = new HashSet<>();
+		for (int i = 0; i < data.length; i++)
+			if (hasChanged(i))
+				changed.add(i);
+		return new Object[]{data, headers, String.format("\nPC : " + ((hex)? "0x%04X" : "%d"), pc), changed, r0AttemptedWrite};
 	}
 	
 	public int getPc() {
@@ -56,7 +75,7 @@ public class RegisterFile {
 		for (Register register : registers)
 			register.clear();
 		pc = instructionsStartAddress;
-		changedRegisters.clear();
+		changedRegisters = 0;
 		r0AttemptedWrite = false;
 	}
 	
@@ -66,12 +85,12 @@ public class RegisterFile {
 		{
 			r0AttemptedWrite = true;
 		}
-		changedRegisters.add(registerNumber);
+		changedRegisters |= 1 << registerNumber;
 	}
 
 	public boolean hasChanged(int registerNumber)
     {
-        return changedRegisters.contains(registerNumber);
+        return (changedRegisters & (1 << registerNumber)) != 0;
     }
 
 	public boolean r0WasAttemptedWrite()
@@ -81,7 +100,7 @@ public class RegisterFile {
 
 	public void clearChanges()
     {
-        changedRegisters.clear();
+        changedRegisters = 0;
         r0AttemptedWrite = false;
     }
 }
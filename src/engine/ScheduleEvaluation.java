@@ -0,0 +1,129 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import engine.timing.ScheduleStatistics;
+import engine.types.Instruction;
+
+/**
+ * The schedule of an executed trace under one units' configuration. Many configurations
+ * are evaluated together over the same trace, in parallel since each schedules its own
+ * copies of the instructions in a unit set of its own.
+ */
+public class ScheduleEvaluation {
+	
+	private int[][] configuration;
+	private ScheduleStatistics statistics;
+	
+	private ScheduleEvaluation(int[][] configuration, Instruction[] trace, int threads, int[] predictor, int[] loadStore) {
+		this.configuration = configuration;
+		UnitSet unitSet = new UnitSet(configuration);
+		unitSet.setThreads(threads);
+		unitSet.setPredictorConfiguration(predictor);
+		unitSet.setLoadStoreConfiguration(loadStore);
+		for (Instruction instruction : trace)
+			unitSet.addExecutedInstruction(instruction.clone());
+		
+		// The instructions carry the latencies they were executed with, which the
+		// configuration replaces for the units it gives one
+		unitSet.setConfiguration(configuration);
+		statistics = unitSet.getStatistics();
+	}
+	
+	/**
+	 * Schedules the instructions kept by a unit set under every configuration, with its
+	 * branch predictor and memory ordering, sharing the work among the available processors.
+	 * @return the evaluations in the order of the configurations
+	 */
+	public static ScheduleEvaluation[] evaluate(UnitSet unitSet, final List<int[][]> configurations) {
+		// Reports invalid configurations before any work starts
+		for (int[][] configuration : configurations)
+			new UnitSet(configuration);
+		
+		final Instruction[] trace = unitSet.getTrace();
+		final int threads = unitSet.getThreads();
+		final int[] predictor = unitSet.getPredictorConfiguration();
+		final int[] loadStore = unitSet.getLoadStoreConfiguration();
+		final ScheduleEvaluation[] evaluations = new ScheduleEvaluation[configurations.size()];
+		IntStream.range(0, evaluations.length).parallel().forEach(
+				i -> evaluations[i] = new ScheduleEvaluation(configurations.get(i), trace, threads, predictor, loadStore));
+		return evaluations;
+	}
+	
+	/**
+	 * Returns the given configuration followed by its variants with every combination of
+	 * the given ROB sizes, reservation stations per unit and factors of the latencies. A
+	 * unit that is not pipelined stays so, taking a new instruction only once it is done.
+	 */
+	public static List<int[][]> getSweep(int[][] configuration, int[] robSizes, int[] stations, int[] factors) {
+		List<int[][]> sweep = new ArrayList<int[][]>();
+		sweep.add(configuration);
+		for (int size : robSizes)
+			for (int station : stations)
+				for (int factor : factors) {
+					int[][] variant = new int[configuration.length][];
+					for (int i = 0; i < variant.length; i++)
+						variant[i] = configuration[i].clone();
+					variant[0][0] = size;
+					for (int i = 1; i < variant.length; i++) {
+						int[] row = variant[i];
+						row[1] = station;
+						if (row.length >= 3) {
+							boolean pipelined = row.length < 4 || row[3] < row[2];
+							row[2] *= factor;
+							if (!pipelined)
+								row[3] = row[2];
+						}
+					}
+					sweep.add(variant);
+				}
+		return sweep;
+	}
+	
+	/**
+	 * Lists the evaluations from the fewest cycles, with their speedup over the first one.
+	 */
+	public static Object[] display(ScheduleEvaluation[] evaluations) {
+		String[] headers = {"ROB", "Stations", "Latencies", "Cycles", "IPC", "Speedup"};
+		long baseline = (evaluations.length == 0)? 0 : evaluations[0].getCycles();
+		ScheduleEvaluation[] sorted = evaluations.clone();
+		Arrays.sort(sorted, (a, b) -> Long.compare(a.getCycles(), b.getCycles()));
+		String[][] data = new String[sorted.length][6];
+		for (int i = 0; i < sorted.length; i++) {
+			int[][] configuration = sorted[i].configuration;
+			String stations = "", latencies = "";
+			for (int j = 1; j < configuration.length; j++) {
+				stations += ((j > 1)? "/" : "") + configuration[j][1];
+				if (configuration[j].length >= 3)
+					latencies += ((latencies.isEmpty())? "" : "/") + configuration[j][2];
+			}
+			data[i][0] = configuration[0][0] + ((sorted[i] == evaluations[0])? " (Current)" : "");
+			data[i][1] = stations;
+			data[i][2] = latencies;
+			data[i][3] = sorted[i].getCycles() + "";
+			data[i][4] = String.format("%.2f", sorted[i].getIpc());
+			data[i][5] = String.format("%.2fx", (sorted[i].getCycles() == 0)? 0 : baseline * 1.0 / sorted[i].getCycles());
+		}
+		return new Object[]{data, headers};
+	}
+	
+	public int[][] getConfiguration() {
+		return configuration;
+	}
+	
+	public long getCycles() {
+		return statistics.getCycles();
+	}
+	
+	public double getIpc() {
+		return statistics.getIpc();
+	}
+	
+	public ScheduleStatistics getStatistics() {
+		return statistics;
+	}
+
+}
@@ -0,0 +1,89 @@
+package engine;
+
+import engine.timing.InstructionRing;
+import engine.types.Instruction;
+
+/**
+ * Schedules the instructions a processor executes on a thread of its own, taking them
+ * from a ring as they are executed, so that executing a program and scheduling it
+ * overlap. The unit set must not be used elsewhere until the thread has finished.
+ */
+public class SchedulerThread extends Thread {
+	
+	private static final int CAPACITY = 4096;
+	
+	// Instructions added to the unit set between schedulings of the ones added
+	private static final int BATCH = 256;
+	
+	private UnitSet unitSet;
+	private InstructionRing ring;
+	private volatile boolean closed;
+	private RuntimeException failure;
+	
+	public SchedulerThread(UnitSet unitSet) {
+		super("Scheduler");
+		this.unitSet = unitSet;
+		ring = new InstructionRing(CAPACITY);
+		setDaemon(true);
+	}
+	
+	public void run() {
+		try {
+			while (true) {
+				// Read before taking, so that every instruction put before closing is taken
+				boolean finished = closed;
+				int taken = 0;
+				Instruction instruction;
+				while (taken < BATCH && (instruction = ring.poll()) != null) {
+					unitSet.addExecutedInstruction(instruction);
+					taken++;
+				}
+				
+				if (taken > 0)
+					unitSet.schedule();
+				else if (finished)
+					return;
+				else
+					Thread.yield();
+			}
+		} catch (RuntimeException ex) {
+			failure = ex;
+		}
+	}
+	
+	/**
+	 * Passes an executed instruction on to be scheduled, waiting while the ring is full.
+	 */
+	public void put(Instruction instruction) {
+		while (!ring.offer(instruction)) {
+			if (!isAlive())
+				return;
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Waits until every instruction put was scheduled, after which the unit set can be
+	 * used again.
+	 * @throws RuntimeException what scheduling the instructions failed with, if anything
+	 */
+	public void finish() {
+		closed = true;
+		boolean interrupted = false;
+		while (isAlive()) {
+			try {
+				join();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		
+		if (failure != null)
+			throw failure;
+	}
+
+}
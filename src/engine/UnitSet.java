@@ -1,185 +1,1640 @@
 package engine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import engine.prediction.BranchPredictionUnit;
+import engine.prediction.BranchStatistics;
+import engine.timing.AddressTable;
+import engine.timing.CpiStack;
+import engine.timing.CycleQueue;
+import engine.timing.CycleSlots;
+import engine.timing.LatencyHistogram;
+import engine.timing.LimitStudy;
+import engine.timing.LoopDetector;
+import engine.timing.OccupancyTracker;
+import engine.timing.ScheduleStatistics;
+import engine.timing.TomasuloCore;
+import engine.types.DisambiguationPolicy;
 import engine.types.FunctionType;
 import engine.types.Instruction;
+import engine.types.PredictorType;
+import engine.types.StallType;
+import engine.types.TimingModel;
 
 public class UnitSet {
 	
+	private static final int REGISTERS = 8;
+	
+	// Operands holding the base address of a load or store, and the data of a store
+	private static final int[] ADDRESS_OPERAND = {1};
+	private static final int[] DATA_OPERAND = {0};
+	
+	public static final int ISSUED = 0;
+	public static final int EXECUTED = 1;
+	public static final int WRITTEN = 2;
+	public static final int COMMITTED = 3;
+	
 	private int[][] configuration;
-	private ArrayList<Instruction> executed;
+	private long[] firstOfFunction;
+	
+	// Hardware contexts whose instructions are interleaved in the trace, sharing the ROB,
+	// stations, units and buses, each with registers of its own
+	private int threads;
+	
+	// Executed instructions and, once scheduled, their timings, kept in a ring. With a
+	// window size set, only the most recent ones are kept and older ones are retired.
+	private Instruction[] executed;
+	private boolean[] mispredictions;
+	private long[][] timings;
+	private byte[] issueCauses;
+	private byte[] stalls;
+	private int head;
+	private int count;
+	private int scheduled;
+	private long retired;
+	private int windowSize;
+	private int revision;
+	
+	// Predicts executed branches and jumps in program order, as the front end would
+	private BranchPredictionUnit prediction;
+	
+	// Disambiguation policy of the load/store queue, forwarding latency and replay penalty
+	private int[] loadStore;
+	
+	// Scheduler state after the last scheduled and the last retired instructions
+	private State state;
+	private State boundary;
+	private ScheduleStatistics statistics;
+	private ScheduleStatistics retiredStatistics;
+	private long[] timing;
+	private int memoryLevels;
+	
+	// Last scheduled instructions and the state at the last iteration found of a loop. Once
+	// a loop is steady, from the sequence number it became so in, each instruction is timed
+	// as the one a period before it, the cycles of a period later, with the state left as
+	// it was then but for the store queue
+	private LoopDetector loops;
+	private long[] values;
+	private boolean extrapolating;
+	private long[] signature;
+	private long signatureIssue;
+	private long signatureSettled;
+	private long signatureSequence;
+	private int period;
+	private long periodCycles;
+	private long steadyFrom;
+	
+	// Statistics of a steady loop are recorded for one iteration starting once nothing
+	// before it holds any resource, which is from the settled cycle on, from the sequence
+	// number periodFrom. The statistics of the iterations timed after it, from deferredFrom
+	// on, are added all at once when the update or the loop ends
+	private long settledCycle;
+	private long periodFrom;
+	private boolean periodRecorded;
+	private long deferredFrom;
+	
+	// Cycle-accurate engine, either producing the timings or checked against the analytic
+	// ones, with the number of kept instructions fed to it and whose timings were taken,
+	// and the first one left unchecked as units were taken out of program order
+	private TimingModel model;
+	private TomasuloCore core;
+	private TomasuloCore.Listener listener;
+	private long fed;
+	private long checked;
+	private long[] divergences;
+	private long divergent;
+	private long firstDivergence;
+	private long uncheckedFrom;
 	
 	public UnitSet(int[][] configuration) {
-		executed = new ArrayList<Instruction>();
+		firstOfFunction = new long[FunctionType.values().length];
+		Arrays.fill(firstOfFunction, -1);
+		executed = new Instruction[16];
+		mispredictions = new boolean[16];
+		timings = new long[4][16];
+		issueCauses = new byte[16];
+		stalls = new byte[16];
+		retiredStatistics = new ScheduleStatistics();
+		timing = new long[4];
+		loops = new LoopDetector();
+		values = new long[LoopDetector.DATA_READY + 1];
+		extrapolating = true;
+		steadyFrom = -1;
+		periodFrom = -1;
+		deferredFrom = -1;
+		model = TimingModel.ANALYTIC;
+		threads = 1;
+		divergences = new long[4];
+		listener = new TomasuloCore.Listener() {
+			
+			public void committed(long sequence, long issued, long executed, long written, long committed, boolean reordered) {
+				takeTiming(sequence, issued, executed, written, committed, reordered);
+			}
+		
+		};
+		prediction = new BranchPredictionUnit(new int[]{PredictorType.STATIC.ordinal(), 1024, 8, 0, 0, 0});
+		loadStore = new int[]{DisambiguationPolicy.CONSERVATIVE.ordinal(), 1, 1};
 		setConfiguration(configuration);
 	}
-		
+	
 	public void addExecutedInstruction(Instruction instruction) {
+		if (instruction.getThread() < 0 || instruction.getThread() >= threads)
+			throw new IllegalArgumentException("Invalid hardware context (" + instruction.getThread() + ")");
+		
 		if (instruction.getExecutionTime() == -1)
 			instruction.setExecutionTime(getExecutionTime(instruction.getFunction()));
 		
-		executed.add(instruction);
+		if (firstOfFunction[instruction.getFunction().ordinal()] == -1)
+			firstOfFunction[instruction.getFunction().ordinal()] = retired + count;
+		
+		if (windowSize > 0 && count == windowSize)
+			retire(1);
+		
+		if (count == executed.length)
+			resize(executed.length * 2);
+		
+		executed[index(count)] = instruction;
+		mispredictions[index(count)] = prediction.mispredicts(instruction);
+		count++;
+	}
+	
+	/**
+	 * Returns the address the front end went on fetching from after the last executed
+	 * instruction if it mispredicted it, or -1 otherwise.
+	 */
+	public int getWrongPath() {
+		if (count == 0 || !mispredictions[index(count - 1)])
+			return -1;
+		return prediction.getPredictedTarget();
 	}
 	
 	public Object[] displaySchedule() {
-		int[][] timings = scheduleInstructions();
-		String[] headers = {"Instruction", "Issued", "Executed", "Written", "Committed"}; 
-		String[][] data = new String[timings.length][5];
-		for (int i = 0; i < timings.length; i++) {
-			data[i][0] = executed.get(i) + "";
-			data[i][1] = timings[i][0] + "";
-			data[i][2] = timings[i][1] + "";
-			data[i][3] = timings[i][2] + "";
-			data[i][4] = timings[i][3] + "";
-		}
-		int cycles = timings[timings.length - 1][3];
-		String data2 = String.format("Executed : %d Instructions\nDuration : %d Cycles\n", executed.size(), cycles);
-		data2 += String.format("IPC      : %.2f", executed.size() * 1.0 / cycles);
-		return new Object[]{data, headers, data2};
-	}
-	
-	private int[][] scheduleInstructions() {
-		int[][] schedule = new int[executed.size()][4];
-		int dependancy;
-		boolean reset = false;
-		boolean cdbEmpty;
-		Instruction instruction;
-		for (int i = 0; i < schedule.length; i++) {
-			instruction = executed.get(i);
-			
-			if (i == 0)
-				schedule[i][0] = 1;
-			else if (reset)
-				schedule[i][0] = schedule[i - 1][3] + 1;
-			else
-				schedule[i][0] = Math.max(getIssueCycle1(schedule, i), getIssueCycle2(schedule, i));
-			
-			dependancy = getDependancy(i);
-			schedule[i][1] = (dependancy == -1)? schedule[i][0] : Math.max(schedule[dependancy][2], schedule[i][0]);
-			schedule[i][1] += executed.get(i).getExecutionTime();
-			schedule[i][2] = schedule[i][1] + 1;
-			
-			do {
-				cdbEmpty = true;
-				for (int j = 0; j < i; j++) {
-					if (schedule[i][2] == schedule[j][2]) {
-						cdbEmpty = false;
-						schedule[i][2]++;
-						break;
-					}
-				}
-			} while(!cdbEmpty);
+		update();
+		String[] headers = {"Instruction", "Issued", "Executed", "Written", "Committed", "Stall"};
+		String[][] data = new String[count][6];
+		for (int i = 0; i < count; i++) {
+			data[i][0] = executed[index(i)] + "";
+			for (int j = 0; j < 4; j++)
+				data[i][j + 1] = timings[j][index(i)] + "";
+			data[i][5] = getStall(i);
+		}
+		return new Object[]{data, headers, displayStatistics()};
+	}
+	
+	public String displayStatistics() {
+		update();
+		String data = String.format("Executed : %d Instructions\nDuration : %d Cycles\n", statistics.getInstructions(), statistics.getCycles());
+		data += String.format("IPC      : %.2f\n", statistics.getIpc());
+		// The IPC of a context over the cycles given to its commits, then its share of the
+		// run's IPC, which the shares add up to
+		for (int i = 0; i < threads && threads > 1; i++) {
+			long cycles = statistics.getCycles(i);
+			data += String.format("Thread %d : %d Instructions, %d Cycles, IPC %.2f (%.2f of the Run)\n", i, statistics.getInstructions(i), cycles,
+					(cycles == 0)? 0 : statistics.getInstructions(i) * 1.0 / cycles, statistics.getIpc(i));
+		}
+		BranchStatistics branches = prediction.getStatistics();
+		data += String.format("Branches : %d Executed, %.2f%% Predicted", branches.getBranches(), branches.getAccuracy() * 100);
+		if (model != TimingModel.EVENT_DRIVEN)
+			data += String.format("\nLoads    : %d Forwarded, %d Replayed", statistics.getForwarded(), statistics.getReplayed());
+		if (model == TimingModel.CROSS_CHECK) {
+			data += String.format("\nCheck    : %d of %d Instructions diverge", divergent, (uncheckedFrom == -1)? checked : uncheckedFrom);
+			if (divergent > 0)
+				data += String.format(" (first at #%d)", firstDivergence + 1);
+			if (uncheckedFrom != -1)
+				data += String.format(", unchecked from #%d on as units start out of program order", uncheckedFrom + 1);
+		}
+		return data;
+	}
+	
+	public Object[] displayLatencies() {
+		update();
+		String[] headers = {"Unit", "Instructions", "Mean", "90th", "Max"};
+		FunctionType[] functions = FunctionType.values();
+		int rows = 0;
+		for (FunctionType function : functions)
+			if (statistics.getLatencies(function).getCount() > 0)
+				rows++;
+		
+		String[][] data = new String[rows][5];
+		int i = 0;
+		for (FunctionType function : functions) {
+			LatencyHistogram latencies = statistics.getLatencies(function);
+			if (latencies.getCount() == 0)
+				continue;
 			
-			schedule[i][3] = ((i == 0)? schedule[0][2] : Math.max(schedule[i - 1][3], schedule[i][2])) + 1;
+			data[i][0] = function.toString();
+			data[i][1] = latencies.getCount() + "";
+			data[i][2] = String.format("%.2f", latencies.getMean());
+			data[i][3] = latencies.getPercentile(90) + "";
+			data[i][4] = latencies.getMax() + "";
+			i++;
+		}
+		return new Object[]{data, headers};
+	}
+	
+	/**
+	 * Summarizes the sampled occupancy of each resource: its capacity, the mean number of
+	 * entries in use, the share of cycles it was full in and its use over the run. Types
+	 * of unit that no instruction used are left out.
+	 */
+	public Object[] displayOccupancy() {
+		update();
+		OccupancyTracker occupancy = statistics.getOccupancy().copy();
+		occupancy.finish();
+		
+		String[] headers = {"Resource", "Capacity", "Mean", "Utilization", "Full", "Over Time"};
+		ArrayList<String[]> rows = new ArrayList<String[]>();
+		rows.add(getOccupancyRow("ROB", occupancy.getHistogram(OccupancyTracker.ROB), configuration[0][0], 
+				occupancy.getSeries(OccupancyTracker.ROB)));
+		rows.add(getOccupancyRow("CDB", occupancy.getHistogram(OccupancyTracker.CDB), getBuses(), 
+				occupancy.getSeries(OccupancyTracker.CDB)));
+		for (FunctionType function : FunctionType.values()) {
+			if (!OccupancyTracker.hasUnits(function) || function.ordinal() >= configuration.length - 1 || 
+					firstOfFunction[function.ordinal()] == -1)
+				continue;
 			
-			reset = false;
-			if (instruction.getFunction() == FunctionType.BRANCH) {
-				int takenAddress = instruction.getAddress() + (Integer)instruction.getOperands()[2] + 2;
-				boolean taken = takenAddress == instruction.getEffectiveAddress();
-				boolean prediction = (Integer)instruction.getOperands()[2] >= 0;
-				reset = taken != prediction;
-			}
-		}
-		return schedule;
-	}
-	
-	private int getIssueCycle1(int[][] schedule, int instructionNumber) {
-		int cycle = schedule[instructionNumber - 1][0] + 1;
-		int minCycle = schedule[instructionNumber - 1][3];
-		int robEntries = 0;
-		for (int j = instructionNumber - 1; j > -1; j--) {
-			if (cycle >= schedule[j][0] && cycle < schedule[j][3]) {
-				robEntries++;
-				if (minCycle > schedule[j][3]) {
-					minCycle = schedule[j][3];
+			int[] row = configuration[function.ordinal() + 1];
+			String name = function.toString().charAt(0) + function.toString().substring(1).toLowerCase();
+			int stations = OccupancyTracker.getStations(function);
+			int units = OccupancyTracker.getUnits(function);
+			rows.add(getOccupancyRow(name + " RS", occupancy.getHistogram(stations), row[0] * row[1], occupancy.getSeries(stations)));
+			rows.add(getOccupancyRow(name + " Units", occupancy.getHistogram(units), row[0], occupancy.getSeries(units)));
+		}
+		return new Object[]{rows.toArray(new String[rows.size()][]), headers};
+	}
+	
+	private static String[] getOccupancyRow(String name, long[] histogram, int capacity, double[] series) {
+		long cycles = 0, used = 0, full = 0;
+		for (int level = 0; level < histogram.length; level++) {
+			cycles += histogram[level];
+			used += level * histogram[level];
+			if (level >= capacity)
+				full += histogram[level];
+		}
+		
+		double mean = (cycles == 0)? 0 : used * 1.0 / cycles;
+		return new String[]{name, capacity + "", String.format("%.2f", mean), String.format("%.2f%%", mean * 100 / capacity), 
+				String.format("%.2f%%", (cycles == 0)? 0 : full * 100.0 / cycles), getSparkline(series, capacity)};
+	}
+	
+	/**
+	 * Draws a time series as a line of block characters, each the mean of a stretch of the
+	 * run relative to the capacity.
+	 */
+	private static String getSparkline(double[] series, int capacity) {
+		char[] blocks = {' ', '\u2581', '\u2582', '\u2583', '\u2584', '\u2585', '\u2586', '\u2587', '\u2588'};
+		int width = Math.min(series.length, 32);
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < width; i++) {
+			int from = i * series.length / width, to = (i + 1) * series.length / width;
+			double sum = 0;
+			for (int j = from; j < to; j++)
+				sum += series[j];
+			double level = Math.min(1, sum / (to - from) / capacity);
+			line.append(blocks[(int) Math.round(level * (blocks.length - 1))]);
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * Lists the prediction accuracy of every executed branch and jump by address.
+	 */
+	public Object[] displayBranches() {
+		String[] headers = {"Address", "Instruction", "Executed", "Mispredicted", "Accuracy"};
+		BranchStatistics branches = prediction.getStatistics();
+		int[] addresses = branches.getAddresses();
+		String[][] data = new String[addresses.length][5];
+		for (int i = 0; i < addresses.length; i++) {
+			long executed = branches.getBranches(addresses[i]);
+			long mispredicted = branches.getMispredictions(addresses[i]);
+			data[i][0] = addresses[i] + "";
+			data[i][1] = branches.getInstruction(addresses[i]) + "";
+			data[i][2] = executed + "";
+			data[i][3] = mispredicted + "";
+			data[i][4] = String.format("%.2f%%", 100 - mispredicted * 100.0 / executed);
+		}
+		return new Object[]{data, headers};
+	}
+	
+	/**
+	 * Schedules the kept instructions on ideal machines, first limited only by their
+	 * dataflow and then by one resource of this machine at a time, next to their actual
+	 * schedule. The share of the dataflow limit each reaches shows the headroom the
+	 * resource leaves.
+	 */
+	public Object[] displayLimits() {
+		update();
+		String[] headers = {"Machine", "Cycles", "IPC", "Of Dataflow"};
+		LimitStudy study = new LimitStudy(configuration, threads, getBuses(), prediction.getPenalty(), loadStore[1]);
+		for (int i = 0; i < count; i++)
+			study.add(executed[index(i)], mispredictions[index(i)]);
+		
+		long cycles = (count == 0)? 0 : timings[COMMITTED][index(count - 1)] - timings[ISSUED][index(0)] + 1;
+		String[][] data = new String[LimitStudy.getMachines() + 1][];
+		double limit = study.getIpc(LimitStudy.DATAFLOW);
+		for (int i = 0; i < LimitStudy.getMachines(); i++) {
+			// Each machine lifts all but at most one constraint of this one
+			assert study.getCycles(i) <= cycles : LimitStudy.getName(i) + " takes " + study.getCycles(i) + " cycles, the schedule " + cycles;
+			data[i] = getLimitRow(LimitStudy.getName(i), study.getCycles(i), study.getIpc(i), limit);
+		}
+		
+		data[data.length - 1] = getLimitRow("Schedule", cycles, (cycles == 0)? 0 : count * 1.0 / cycles, limit);
+		return new Object[]{data, headers};
+	}
+	
+	private static String[] getLimitRow(String name, long cycles, double ipc, double limit) {
+		return new String[]{name, cycles + "", String.format("%.2f", ipc), String.format("%.2f%%", (limit == 0)? 0 : ipc * 100 / limit)};
+	}
+	
+	/**
+	 * Breaks down the cycles of the instructions at the given addresses, inclusive, by
+	 * the reason they were spent, as cycles per instruction and share of the cycles.
+	 */
+	public Object[] displayCpiStack(int from, int to) {
+		update();
+		String[] headers = {"Reason", "Cycles", "CPI", "Share"};
+		long[] range = statistics.getCpiStack().getRange(from, to);
+		long cycles = 0;
+		for (int i = 1; i < range.length; i++)
+			cycles += range[i];
+		
+		String[][] data = new String[range.length][4];
+		for (int i = 1; i < range.length; i++) {
+			data[i - 1][0] = getSlotName(i - 1);
+			data[i - 1][1] = range[i] + "";
+			data[i - 1][2] = String.format("%.3f", (range[0] == 0)? 0 : range[i] * 1.0 / range[0]);
+			data[i - 1][3] = String.format("%.2f%%", (cycles == 0)? 0 : range[i] * 100.0 / cycles);
+		}
+		data[range.length - 1] = new String[]{"Total", cycles + "", String.format("%.3f", (range[0] == 0)? 0 : cycles * 1.0 / range[0]), 
+				String.format("%d Instructions", range[0])};
+		return new Object[]{data, headers};
+	}
+	
+	/**
+	 * Returns the reason most of the cycles between the commit of the previous instruction
+	 * and the given kept one were spent on, or an empty string if not known.
+	 */
+	public String getStall(int instruction) {
+		if (model == TimingModel.EVENT_DRIVEN)
+			return "";
+		
+		if (instruction >= scheduled)
+			update();
+		
+		return getSlotName(stalls[index(instruction)]);
+	}
+	
+	private String getSlotName(int slot) {
+		StallType[] types = StallType.values();
+		if (slot < types.length)
+			return types[slot].toString();
+		
+		return (slot - types.length < memoryLevels - 1)? "L" + (slot - types.length + 1) + " Cache" : "Memory";
+	}
+	
+	public BranchStatistics getBranchStatistics() {
+		return prediction.getStatistics();
+	}
+	
+	public ScheduleStatistics getStatistics() {
+		update();
+		return statistics;
+	}
+	
+	/**
+	 * Schedules the executed instructions added since the last time, rather than when
+	 * their timings are first asked for.
+	 */
+	public void schedule() {
+		update();
+	}
+	
+	/**
+	 * Returns the number of executed instructions kept, which excludes the retired ones.
+	 */
+	public int getExecutedCount() {
+		return count;
+	}
+	
+	public long getRetiredCount() {
+		return retired;
+	}
+	
+	/**
+	 * @param instruction the position of the instruction among the kept ones
+	 */
+	public Instruction getExecutedInstruction(int instruction) {
+		return executed[index(instruction)];
+	}
+	
+	/**
+	 * Returns copies of the kept instructions in program order, which can be scheduled
+	 * elsewhere without changing the kept ones.
+	 */
+	public Instruction[] getTrace() {
+		Instruction[] trace = new Instruction[count];
+		for (int i = 0; i < count; i++)
+			trace[i] = executed[index(i)].clone();
+		return trace;
+	}
+	
+	/**
+	 * Returns the cycle at which the given kept instruction reaches a stage,
+	 * scheduling any newly executed instructions first.
+	 * @param stage one of ISSUED, EXECUTED, WRITTEN or COMMITTED
+	 */
+	public long getTiming(int instruction, int stage) {
+		if (instruction >= scheduled)
+			update();
+		
+		return timings[stage][index(instruction)];
+	}
+	
+	/**
+	 * Incremented whenever previously computed timings are discarded, so that views
+	 * holding rows of the schedule know to reload them instead of appending.
+	 */
+	public int getRevision() {
+		return revision;
+	}
+	
+	/**
+	 * Limits the number of executed instructions kept to the given size, retiring older
+	 * ones into the running statistics so that long runs use bounded memory. A size of
+	 * 0 keeps all of them.
+	 */
+	public void setWindowSize(int windowSize) {
+		if (windowSize < 0)
+			throw new IllegalArgumentException("Invalid window size");
+		
+		this.windowSize = windowSize;
+		if (windowSize > 0 && count > windowSize)
+			retire(count - windowSize);
+	}
+	
+	public int getWindowSize() {
+		return windowSize;
+	}
+	
+	/**
+	 * Sets the number of hardware contexts whose instructions are executed, which share
+	 * the ROB, stations, units and buses but not their registers. A mispredicted branch
+	 * or jump only holds back the instructions of its own context.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of hardware contexts");
+		
+		if (threads == this.threads)
+			return;
+		
+		if (count > 0 || retired > 0)
+			throw new IllegalArgumentException("Hardware contexts can not change with instructions executed, clear the unit set first");
+		
+		if (configuration[0].length > 4 && configuration[0][4] <= REGISTERS * threads)
+			throw new IllegalArgumentException("Physical registers (" + configuration[0][4] + ") must be more than the " + REGISTERS * threads + " architectural ones");
+		
+		this.threads = threads;
+		invalidate(0);
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Returns the first cycle the given hardware context can issue its next instruction
+	 * in, once every executed one is scheduled, which is later than for the others while
+	 * its last instruction was mispredicted.
+	 */
+	public long getResumeCycle(int thread) {
+		update();
+		if (model == TimingModel.EVENT_DRIVEN || state.instructions == 0)
+			return 0;
+		
+		return Math.max(state.getIssueCandidate(), state.getResume(thread, prediction.getPenalty()));
+	}
+	
+	/**
+	 * Returns the number of instructions of the given hardware context that have issued
+	 * but not started executing in the cycle the next instruction can issue in. Only as
+	 * many instructions as the ROB holds can still be in flight.
+	 */
+	public int getWaiting(int thread) {
+		update();
+		if (model == TimingModel.EVENT_DRIVEN || state.instructions == 0)
+			return 0;
+		
+		long cycle = state.getIssueCandidate();
+		int waiting = 0;
+		for (int i = scheduled - 1; i >= Math.max(0, scheduled - configuration[0][0]); i--) {
+			Instruction instruction = executed[index(i)];
+			if (instruction.getThread() == thread && timings[EXECUTED][index(i)] - instruction.getExecutionTime() > cycle)
+				waiting++;
+		}
+		return waiting;
+	}
+	
+	/**
+	 * Sets whether iterations of a loop that runs steadily are timed from the iteration
+	 * before them rather than scheduled one instruction at a time. Both give the same
+	 * timings, so this only changes how long scheduling takes.
+	 */
+	public void setExtrapolating(boolean extrapolating) {
+		this.extrapolating = extrapolating;
+	}
+	
+	public boolean isExtrapolating() {
+		return extrapolating;
+	}
+	
+	/**
+	 * Selects whether timings come from the analytic scheduler or from the cycle-accurate
+	 * engine, or from the analytic scheduler checked against the engine, which counts the
+	 * instructions whose timings diverge.
+	 */
+	public void setTimingModel(TimingModel model) {
+		if (model == this.model)
+			return;
+		
+		if (retired > 0)
+			throw new IllegalArgumentException("Retired instructions can not be rescheduled, run the program again instead");
+		
+		this.model = model;
+		invalidate(0);
+	}
+	
+	public TimingModel getTimingModel() {
+		return model;
+	}
+	
+	/**
+	 * Returns the number of checked instructions whose timing at the given stage differs
+	 * between the two models, when cross-checking.
+	 */
+	public long getDivergences(int stage) {
+		update();
+		return divergences[stage];
+	}
+	
+	/**
+	 * Returns the number of checked instructions with a divergent timing at any stage.
+	 */
+	public long getDivergentCount() {
+		update();
+		return divergent;
+	}
+	
+	/**
+	 * Returns the position among all executed instructions of the first one whose timings
+	 * diverge, or -1 if none.
+	 */
+	public long getFirstDivergence() {
+		update();
+		return firstDivergence;
+	}
+	
+	/**
+	 * Returns the position among all executed instructions of the first one left unchecked,
+	 * or -1 if none. The engine starts instructions on units given an initiation interval
+	 * as they get their operands, while the analytic scheduler claims them in program
+	 * order, so from the first instruction started in another cycle the two can not be
+	 * compared.
+	 */
+	public long getUncheckedFrom() {
+		update();
+		return uncheckedFrom;
+	}
+	
+	private void update() {
+		if (model != TimingModel.EVENT_DRIVEN) {
+			for (int i = scheduled; i < count; i++) {
+				if (steadyFrom == -1 && extrapolating)
+					findLoop(i);
+				
+				if (steadyFrom != -1) {
+					if (extrapolating && extrapolate(i))
+						continue;
+					
+					leaveLoop(i);
 				}
+				scheduleInstruction(i);
 			}
+			scheduled = count;
+			if (deferredFrom != -1)
+				addDeferred(retired + count);
 		}
-		return (robEntries >= configuration[0][0])? minCycle + 1 : cycle;
+		
+		if (model != TimingModel.ANALYTIC)
+			runCore();
 	}
 	
-	private int getIssueCycle2(int[][] schedule, int instructionNumber) {
-		FunctionType function = executed.get(instructionNumber).getFunction();
-		int cycle = schedule[instructionNumber - 1][0] + 1;
+	/**
+	 * Feeds the newly executed instructions to the engine and advances it, then drains a
+	 * copy of it to get the timings of the instructions still in flight. These are final,
+	 * since later instructions can not delay earlier ones in the engine.
+	 */
+	private void runCore() {
+		if (fed == retired + count)
+			return;
 		
-		if (function.ordinal() >= configuration.length - 1)
-			return cycle;
+		for (long i = fed; i < retired + count; i++)
+			core.add(executed[index((int) (i - retired))], mispredictions[index((int) (i - retired))]);
+		fed = retired + count;
+		
+		core.advance();
+		core.copy(listener).drain();
+	}
+	
+	/**
+	 * Stores or checks the timings of an instruction committed by the engine, unless
+	 * they were already taken.
+	 */
+	private void takeTiming(long sequence, long issued, long executed, long written, long committed, boolean reordered) {
+		if (sequence < checked)
+			return;
+		
+		checked = sequence + 1;
+		int i = index((int) (sequence - retired));
+		if (model == TimingModel.EVENT_DRIVEN) {
+			timings[ISSUED][i] = issued;
+			timings[EXECUTED][i] = executed;
+			timings[WRITTEN][i] = written;
+			timings[COMMITTED][i] = committed;
+			addOccupancy(statistics, this.executed[i], executed - this.executed[i].getExecutionTime(), timings, i);
+			statistics.add(this.executed[i], issued, written, committed);
+			scheduled++;
+			return;
+		}
+		
+		if (reordered) {
+			if (uncheckedFrom == -1)
+				uncheckedFrom = sequence;
+			return;
+		}
+		
+		timing[ISSUED] = issued;
+		timing[EXECUTED] = executed;
+		timing[WRITTEN] = written;
+		timing[COMMITTED] = committed;
+		boolean diverges = false;
+		for (int j = 0; j < 4; j++)
+			if (timings[j][i] != timing[j]) {
+				divergences[j]++;
+				diverges = true;
+			}
+		
+		if (diverges) {
+			if (divergent == 0)
+				firstDivergence = sequence;
+			divergent++;
+		}
+	}
+	
+	private void scheduleInstruction(int i) {
+		Instruction instruction = executed[index(i)];
+		
+		StallType cause = StallType.FETCH;
+		if (state.instructions == 0)
+			timing[ISSUED] = 1;
+		else {
+			long candidate = state.getIssueCandidate();
+			long resume = state.getResume(instruction.getThread(), prediction.getPenalty());
+			long switched = (instruction.getSwitchCycles() > 0)? state.lastCommit + 1 + instruction.getSwitchCycles() : 0;
+			long rob = getIssueCycle1();
+			long stations = getIssueCycle2(instruction.getFunction());
+			long registers = getIssueCycle3(instruction.getFunction());
+			timing[ISSUED] = Math.max(Math.max(Math.max(resume, switched), rob), Math.max(stations, registers));
+			if (timing[ISSUED] > candidate) {
+				if (switched == timing[ISSUED])
+					cause = StallType.CONTEXT_SWITCH;
+				else if (resume == timing[ISSUED])
+					cause = StallType.MISPREDICT;
+				else if (rob == timing[ISSUED])
+					cause = StallType.ROB_FULL;
+				else
+					cause = (stations == timing[ISSUED])? StallType.RS_FULL : StallType.FREE_LIST;
+			}
+		}
+		
+		timing[EXECUTED] = state.getExecuted(instruction, timing[ISSUED], loadStore);
+		
+		// No instruction writes before it issues, so earlier bus slots can be forgotten
+		state.cdb.discardBefore(timing[ISSUED]);
+		timing[WRITTEN] = state.cdb.claim(timing[EXECUTED] + 1);
+		
+		timing[COMMITTED] = timing[WRITTEN] + 1;
+		if (state.instructions > 0)
+			timing[COMMITTED] = Math.max(timing[COMMITTED], state.getCommitCandidate());
+		
+		for (int j = 0; j < 4; j++)
+			values[j] = timing[j];
+		values[LoopDetector.READY] = state.ready;
+		values[LoopDetector.STARTED] = state.started;
+		values[LoopDetector.SOURCE] = state.source;
+		if (instruction.getFunction() == FunctionType.STORE) {
+			values[LoopDetector.ADDRESS_READY] = state.getReady(instruction, ADDRESS_OPERAND, timing[ISSUED]);
+			values[LoopDetector.DATA_READY] = state.getReady(instruction, DATA_OPERAND, timing[ISSUED]);
+		}
+		state.record(instruction, mispredictions[index(i)], timing);
+		addTiming(i, cause);
+	}
+	
+	/**
+	 * Keeps the timings of a kept instruction just scheduled, with the state telling how
+	 * it executed, adding it to the statistics and the recorded instructions.
+	 */
+	private void addTiming(int i, StallType cause) {
+		Instruction instruction = executed[index(i)];
+		for (int j = 0; j < 4; j++)
+			timings[j][index(i)] = timing[j];
+		issueCauses[index(i)] = (byte) cause.ordinal();
+		if (deferredFrom == -1)
+			addStatistics(i, cause);
+		else
+			stalls[index(i)] = stalls[index(i - period)];
+		loops.record(instruction, mispredictions[index(i)], cause.ordinal(), state.replayed, values);
+	}
+	
+	/**
+	 * Adds a kept instruction with the timings just given it to the statistics, with the
+	 * state telling how it executed.
+	 */
+	private void addStatistics(int i, StallType cause) {
+		Instruction instruction = executed[index(i)];
+		if (state.forwarded)
+			statistics.addForwarded(state.replayed);
+		stalls[index(i)] = (byte) addStalls(statistics, state, instruction, cause, timing);
+		addOccupancy(statistics, instruction, state.started, timings, index(i));
+		statistics.add(instruction, timing[ISSUED], timing[WRITTEN], timing[COMMITTED]);
+	}
+	
+	/**
+	 * Checks whether the given kept instruction begins an iteration of a loop that left the
+	 * scheduler state as the iteration before it did, only later. If so, the iterations
+	 * that follow are timed as the one before them, shifted by as many cycles, for as long
+	 * as they run alike.
+	 */
+	private void findLoop(int i) {
+		long sequence = retired + i;
+		int length = loops.getIteration(sequence, executed[index(i)]);
+		if (length == 0)
+			return;
+		
+		long[] current = state.getSignature();
+		if (signature != null && signatureSequence == sequence - length && state.lastIssue > signatureIssue &&
+				Arrays.equals(signature, current)) {
+			period = length;
+			periodCycles = state.lastIssue - signatureIssue;
+			steadyFrom = sequence;
+			settledCycle = signatureSettled;
+		}
+		signature = current;
+		signatureIssue = state.lastIssue;
+		signatureSettled = state.getLastClaimable();
+		signatureSequence = sequence;
+	}
+	
+	/**
+	 * Times a kept instruction as the one a period before it, shifted by the cycles of the
+	 * period, when it runs alike. A load must also find the same store in flight as that
+	 * one did, which the loop's state leaves out, or none.
+	 * @return whether it was timed, leaving everything unchanged if not
+	 */
+	private boolean extrapolate(int i) {
+		Instruction instruction = executed[index(i)];
+		FunctionType function = instruction.getFunction();
+		int address = instruction.getEffectiveAddress();
+		long sequence = retired + i;
+		long earlier = sequence - period;
+		if (!loops.matches(earlier, instruction, mispredictions[index(i)]))
+			return false;
+		
+		long source = -1;
+		if (function == FunctionType.LOAD && address != -1) {
+			int store = state.stores.find(address);
+			long earlierSource = loops.get(earlier, LoopDetector.SOURCE);
+			if (earlierSource == -1) {
+				if (store != -1 && state.stores.get(store, AddressTable.COMMITTED) > loops.get(earlier, LoopDetector.STARTED) + periodCycles)
+					return false;
+			} else {
+				if (store == -1)
+					return false;
+				
+				source = state.stores.get(store, AddressTable.SEQUENCE);
+				if (sequence - source != earlier - earlierSource || !loops.contains(earlierSource) ||
+						state.stores.get(store, AddressTable.ADDRESS_READY) != loops.get(earlierSource, LoopDetector.ADDRESS_READY) + periodCycles ||
+						state.stores.get(store, AddressTable.DATA_READY) != loops.get(earlierSource, LoopDetector.DATA_READY) + periodCycles ||
+						state.stores.get(store, AddressTable.COMMITTED) != loops.get(earlierSource, LoopDetector.COMMITTED) + periodCycles)
+					return false;
+			}
+		}
+		
+		for (int j = 0; j < values.length; j++)
+			values[j] = loops.get(earlier, j) + periodCycles;
+		values[LoopDetector.SOURCE] = source;
+		for (int j = 0; j < 4; j++)
+			timing[j] = values[j];
+		
+		state.ready = values[LoopDetector.READY];
+		state.started = values[LoopDetector.STARTED];
+		state.forwarded = source != -1;
+		state.replayed = loops.isReplayed(earlier);
+		if (function == FunctionType.STORE)
+			state.addStore(address, sequence, values[LoopDetector.ADDRESS_READY], values[LoopDetector.DATA_READY], timing);
+		
+		deferStatistics(i);
+		addTiming(i, StallType.values()[loops.getCause(earlier)]);
+		return true;
+	}
+	
+	/**
+	 * At the start of an iteration of the steady loop, records the statistics of the
+	 * iteration once nothing before the loop holds any resource, after which the
+	 * statistics of each iteration are the recorded ones. Those of the iterations that
+	 * follow are then left to be added at once, as long as the stalls of the kept
+	 * instructions can be taken from the ones a period before them.
+	 */
+	private void deferStatistics(int i) {
+		long sequence = retired + i;
+		if ((sequence - steadyFrom) % period != 0)
+			return;
+		
+		if (periodFrom == -1 && statistics.getOccupancy().getCycles() >= settledCycle) {
+			statistics.mark();
+			periodFrom = sequence;
+		} else if (periodFrom != -1 && sequence == periodFrom + period)
+			periodRecorded = statistics.endPeriod();
+		
+		if (periodRecorded && deferredFrom == -1 && i >= period)
+			deferredFrom = sequence;
+	}
+	
+	/**
+	 * Adds the statistics left to be added up to the given sequence number, the whole
+	 * iterations at once and the instructions of the last part of one each on its own.
+	 */
+	private void addDeferred(long end) {
+		long iterations = (end - deferredFrom) / period;
+		if (iterations > 0)
+			statistics.repeat(iterations);
+		for (long sequence = deferredFrom + iterations * period; sequence < end; sequence++) {
+			int i = (int) (sequence - retired);
+			for (int j = 0; j < 4; j++)
+				timing[j] = timings[j][index(i)];
+			state.ready = loops.get(sequence, LoopDetector.READY);
+			state.started = loops.get(sequence, LoopDetector.STARTED);
+			state.forwarded = loops.get(sequence, LoopDetector.SOURCE) != -1;
+			state.replayed = loops.isReplayed(sequence);
+			addStatistics(i, StallType.values()[issueCauses[index(i)]]);
+		}
+		deferredFrom = -1;
+	}
+	
+	/**
+	 * Brings the scheduler state, left as it was when the loop was found, up to the given
+	 * kept instruction, shifting it by the whole iterations timed since and replaying the
+	 * part of the last one before the instruction. Only the store queue was kept up to
+	 * date, since it is the one part that does not just shift.
+	 */
+	private void leaveLoop(int i) {
+		long sequence = retired + i;
+		if (deferredFrom != -1)
+			addDeferred(sequence);
+		statistics.clearPeriod();
+		periodFrom = -1;
+		periodRecorded = false;
+		
+		long iterations = (sequence - steadyFrom) / period;
+		state.shift(iterations * periodCycles, iterations * period);
+		for (long j = steadyFrom + iterations * period; j < sequence; j++) {
+			for (int k = 0; k < 4; k++)
+				timing[k] = loops.get(j, k);
+			state.replay(loops.getInstruction(j), loops.isMispredicted(j), timing, loadStore);
+		}
+		steadyFrom = -1;
+		signature = null;
+	}
+	
+	/**
+	 * Splits the cycles between the commits of the previous instruction and this one among
+	 * the stages this one went through during them, adding them to the CPI stack of the
+	 * statistics before the instruction itself is added. The stages follow each other, each
+	 * ending where the next starts, so the cycles split add up to the gap between commits.
+	 * Since an instruction only reaches the head of the ROB once its producers committed,
+	 * waiting on them shows up as the part of its own execution it could not hide.
+	 * @param state the scheduler state the instruction's execution was just computed in
+	 * @return the slot given the most cycles
+	 */
+	private int addStalls(ScheduleStatistics statistics, State state, Instruction instruction, StallType cause, long[] timing) {
+		CpiStack stack = statistics.getCpiStack();
+		stack.addInstruction(instruction.getAddress());
+		boolean load = instruction.getFunction() == FunctionType.LOAD && instruction.getEffectiveAddress() != -1;
+		int[] accessTimes = (state.forwarded)? null : instruction.getAccessTimes();
+		if (accessTimes != null)
+			memoryLevels = Math.max(memoryLevels, accessTimes.length);
+		
+		int stages = 6 + ((accessTimes == null)? 1 : accessTimes.length);
+		long[] ends = new long[stages];
+		int[] slots = new int[stages];
+		int stage = 0;
+		ends[stage] = timing[ISSUED];
+		slots[stage++] = cause.ordinal();
+		ends[stage] = state.ready;
+		slots[stage++] = StallType.DATA.ordinal();
+		ends[stage] = state.started;
+		slots[stage++] = (load? StallType.ORDERING : StallType.UNIT).ordinal();
+		if (accessTimes == null) {
+			// Execution latency left exposed is put down to whatever made it start late
+			StallType execution = StallType.EXECUTE;
+			if (state.started > state.ready)
+				execution = load? StallType.ORDERING : StallType.UNIT;
+			else if (state.ready > timing[ISSUED])
+				execution = StallType.DATA;
+			ends[stage] = timing[EXECUTED];
+			slots[stage++] = execution.ordinal();
+		} else {
+			long end = state.started;
+			for (int level = 0; level < accessTimes.length; level++) {
+				end += accessTimes[level];
+				ends[stage] = end;
+				slots[stage++] = StallType.values().length + level;
+			}
+		}
+		ends[stage] = timing[EXECUTED] + 1;
+		slots[stage++] = StallType.BASE.ordinal();
+		ends[stage] = timing[WRITTEN];
+		slots[stage++] = StallType.CDB.ordinal();
+		ends[stage] = timing[COMMITTED];
+		slots[stage++] = StallType.BASE.ordinal();
 		
-		int minCycle = schedule[instructionNumber - 1][3];
-		int stations = 0;
-		for (int j = instructionNumber - 1; j > -1; j--) {
-			if (function == executed.get(j).getFunction() && cycle >= schedule[j][0] && cycle < schedule[j][3]) {
-				stations++;
-				if (minCycle > schedule[j][3]) {
-					minCycle = schedule[j][3];
+		long from = statistics.getCycles();
+		long start = Long.MIN_VALUE;
+		long most = 0;
+		int stall = StallType.BASE.ordinal();
+		for (int i = 0; i < stages; i++) {
+			long end = Math.min(Math.max(ends[i], start), timing[COMMITTED]);
+			long cycles = end - Math.max(start, from);
+			if (cycles > 0) {
+				stack.add(instruction.getAddress(), slots[i], cycles);
+				if (cycles > most) {
+					most = cycles;
+					stall = slots[i];
 				}
 			}
+			start = Math.max(start, end);
 		}
-		int allStations = configuration[function.ordinal() + 1][0] * configuration[function.ordinal() + 1][1];
-		return (stations >= allStations)? minCycle : cycle;
+		return stall;
+	}
+	
+	/**
+	 * Adds the cycles an instruction held the ROB, its reservation station and unit and a
+	 * bus to the sampled occupancy of the statistics.
+	 * @param row the index of its timings in the ring
+	 */
+	private void addOccupancy(ScheduleStatistics statistics, Instruction instruction, long started, long[][] timings, int row) {
+		FunctionType function = instruction.getFunction();
+		int interval = 1;
+		if (function.ordinal() < configuration.length - 1 && configuration[function.ordinal() + 1].length > 3)
+			interval = configuration[function.ordinal() + 1][3];
+		
+		statistics.getOccupancy().add(function, timings[ISSUED][row], started, interval, timings[WRITTEN][row], timings[COMMITTED][row]);
 	}
 	
-	private int getDependancy(int instructionNumber) {
-		Instruction instruction = executed.get(instructionNumber);
-		boolean writes;
-		for (int i = instructionNumber - 1; i >= 0; i--) {
-			Instruction prev = executed.get(i);
-			writes = prev.getFunction() != FunctionType.STORE && 
-					prev.getFunction() != FunctionType.BRANCH && 
-					prev.getFunction() != FunctionType.JUMP;
+	/**
+	 * Drops the given number of oldest instructions, folding them into the statistics
+	 * and the scheduler state that the kept ones are rescheduled from.
+	 */
+	private void retire(int instructions) {
+		update();
+		for (int i = 0; i < instructions; i++) {
+			Instruction instruction = executed[head];
+			for (int j = 0; j < 4; j++)
+				timing[j] = timings[j][head];
+			if (model != TimingModel.EVENT_DRIVEN) {
+				boundary.replay(instruction, mispredictions[head], timing, loadStore);
+				if (boundary.forwarded)
+					retiredStatistics.addForwarded(boundary.replayed);
+				addStalls(retiredStatistics, boundary, instruction, StallType.values()[issueCauses[head]], timing);
+			}
+			long started = (model != TimingModel.EVENT_DRIVEN)? boundary.started : timing[EXECUTED] - instruction.getExecutionTime();
+			addOccupancy(retiredStatistics, instruction, started, timings, head);
+			retiredStatistics.add(instruction, timing[ISSUED], timing[WRITTEN], timing[COMMITTED]);
 			
-			if (instruction.getFunction() == FunctionType.LOAD) {
-				if (prev.getFunction() == FunctionType.STORE && 
-					prev.getEffectiveAddress() == instruction.getEffectiveAddress())
-					return i;
-			} if (instruction.getFunction() == FunctionType.STORE || instruction.getFunction() == FunctionType.JUMP) {
-				if (writes && prev.getDestination() == instruction.getRegisterNumber(0))
-					return i;
-			} if (instruction.getFunction() == FunctionType.BRANCH) {
-				if (writes && (prev.getDestination() == instruction.getRegisterNumber(0) || 
-					prev.getDestination() == instruction.getRegisterNumber(1)))
-					return i;
-			} else {
-				if (writes && (prev.getDestination() == instruction.getRegisterNumber(1) || 
-					prev.getDestination() == instruction.getRegisterNumber(2)))
-					return i;
+			executed[head] = null;
+			head = index(1);
+			count--;
+			scheduled--;
+			retired++;
+		}
+	}
+	
+	/**
+	 * Discards the timings from the given kept instruction onwards, rebuilding the
+	 * scheduler state from the timings kept before it.
+	 */
+	private void invalidate(int from) {
+		if (retired == 0)
+			boundary = new State(configuration, threads);
+		boundary.configure(configuration);
+		state = boundary.copy();
+		statistics = retiredStatistics.copy();
+		
+		for (int i = 0; i < from; i++) {
+			for (int j = 0; j < 4; j++)
+				timing[j] = timings[j][index(i)];
+			if (model != TimingModel.EVENT_DRIVEN) {
+				state.replay(executed[index(i)], mispredictions[index(i)], timing, loadStore);
+				if (state.forwarded)
+					statistics.addForwarded(state.replayed);
+				addStalls(statistics, state, executed[index(i)], StallType.values()[issueCauses[index(i)]], timing);
 			}
+			long started = (model != TimingModel.EVENT_DRIVEN)? state.started : timing[EXECUTED] - executed[index(i)].getExecutionTime();
+			addOccupancy(statistics, executed[index(i)], started, timings, index(i));
+			statistics.add(executed[index(i)], timing[ISSUED], timing[WRITTEN], timing[COMMITTED]);
 		}
-		return -1;
+		scheduled = from;
+		revision++;
+		loops.clear(retired + from);
+		signature = null;
+		steadyFrom = -1;
+		periodFrom = -1;
+		periodRecorded = false;
+		deferredFrom = -1;
+		
+		// The engine can only be restarted from the first instruction, replaying the kept
+		// timings of the ones before the invalidated instruction
+		core = null;
+		if (model != TimingModel.ANALYTIC) {
+			core = new TomasuloCore(configuration, threads, prediction.getPenalty(), loadStore, listener);
+			fed = 0;
+			checked = (model == TimingModel.EVENT_DRIVEN)? retired + from : 0;
+		}
+		Arrays.fill(divergences, 0);
+		divergent = 0;
+		firstDivergence = -1;
+		uncheckedFrom = -1;
+	}
+	
+	/**
+	 * The ROB entries still occupied at the candidate cycle are exactly the ones at the
+	 * head of the queue, since instructions issue and commit in order.
+	 */
+	private long getIssueCycle1() {
+		long cycle = state.getIssueCandidate();
+		state.rob.removeUpTo(cycle);
+		return (state.rob.size() >= configuration[0][0])? state.rob.peek() + 1 : cycle;
+	}
+	
+	private long getIssueCycle2(FunctionType function) {
+		long cycle = state.getIssueCandidate();
+		
+		if (function.ordinal() >= configuration.length - 1)
+			return cycle;
+		
+		CycleQueue occupied = state.stations[function.ordinal()];
+		occupied.removeUpTo(cycle);
+		int allStations = configuration[function.ordinal() + 1][0] * configuration[function.ordinal() + 1][1];
+		return (occupied.size() >= allStations)? occupied.peek() : cycle;
+	}
+	
+	/**
+	 * An instruction writing a register takes a physical one from the free list as it
+	 * issues, and the one previously holding the register is freed as it commits. Beyond
+	 * the architectural registers, those in use are then exactly the ones taken by the
+	 * writers in flight, which commit in order.
+	 */
+	private long getIssueCycle3(FunctionType function) {
+		long cycle = state.getIssueCandidate();
+		if (state.renamed == null || !function.writesRegister())
+			return cycle;
+		
+		state.renamed.removeUpTo(cycle);
+		return (state.renamed.size() >= state.renameRegisters)? state.renamed.peek() + 1 : cycle;
 	}
 	
 	private int getExecutionTime(FunctionType function) {
 		if (function.ordinal() >= configuration.length - 1)
 			return 1;
 		
-		if (configuration[function.ordinal() + 1].length == 3)
+		if (configuration[function.ordinal() + 1].length >= 3)
 			return configuration[function.ordinal() + 1][2];
 		
 		return -1;
 	}
-
+	
 	public void setConfiguration(int[][] configuration) {
 		for (int i = 0; i < configuration.length; i++)
 			for (int j = 0; j < configuration[i].length; j++)
 				if (configuration[i][j] < 1)
 					throw new IllegalArgumentException("Invalid units' configuration");
-
+		
+		if (configuration[0].length > 4 && configuration[0][4] <= REGISTERS * threads)
+			throw new IllegalArgumentException("Physical registers (" + configuration[0][4] + ") must be more than the " + REGISTERS * threads + " architectural ones");
+		
+		long affected = getFirstAffected(configuration);
+		boolean changed = this.configuration == null || !Arrays.deepEquals(this.configuration, configuration);
+		if (affected < retired || (changed && model != TimingModel.ANALYTIC && retired > 0))
+			throw new IllegalArgumentException("Retired instructions can not be rescheduled, run the program again instead");
+		
 		this.configuration = configuration;
 		
-		for (Instruction instruction : executed) {
-			int time = getExecutionTime(instruction.getFunction());
+		for (int i = 0; i < count; i++) {
+			int time = getExecutionTime(executed[index(i)].getFunction());
 			if (time != -1)
-				instruction.setExecutionTime(time);
+				executed[index(i)].setExecutionTime(time);
 		}
+		
+		if (affected - retired < scheduled || state == null || (changed && model != TimingModel.ANALYTIC))
+			invalidate((int) Math.min(affected - retired, scheduled));
+	}
+	
+	/**
+	 * Returns the first executed instruction whose timing may change under the new
+	 * configuration, which is the first one using a unit whose settings changed.
+	 */
+	private long getFirstAffected(int[][] configuration) {
+		if (this.configuration == null || this.configuration.length != configuration.length ||
+				!Arrays.equals(this.configuration[0], configuration[0]))
+			return 0;
+		
+		long affected = retired + count;
+		for (int i = 1; i < configuration.length; i++)
+			if (!Arrays.equals(this.configuration[i], configuration[i]) && firstOfFunction[i - 1] != -1)
+				affected = Math.min(affected, firstOfFunction[i - 1]);
+		
+		return affected;
 	}
 	
 	public int[][] getConfiguration() {
 		return configuration;
 	}
 	
+	public int getIssueWidth() {
+		return getWidth(configuration, 1);
+	}
+	
+	public int getCommitWidth() {
+		return getWidth(configuration, 2);
+	}
+	
+	public int getBuses() {
+		return getWidth(configuration, 3);
+	}
+	
+	/**
+	 * Replaces the branch predictor, predicting the kept instructions again with the new
+	 * one and rescheduling them from the first branch or jump.
+	 * @see BranchPredictionUnit
+	 */
+	public void setPredictorConfiguration(int[] configuration) {
+		if (Arrays.equals(prediction.getConfiguration(), configuration))
+			return;
+		
+		BranchPredictionUnit prediction = new BranchPredictionUnit(configuration);
+		long affected = retired + count;
+		for (FunctionType function : new FunctionType[]{FunctionType.BRANCH, FunctionType.JUMP_AND_LINK})
+			if (firstOfFunction[function.ordinal()] != -1)
+				affected = Math.min(affected, firstOfFunction[function.ordinal()]);
+		
+		if (affected < retired || (model != TimingModel.ANALYTIC && retired > 0))
+			throw new IllegalArgumentException("Retired instructions can not be rescheduled, run the program again instead");
+		
+		this.prediction = prediction;
+		for (int i = 0; i < count; i++)
+			mispredictions[index(i)] = prediction.mispredicts(executed[index(i)]);
+		
+		if (affected - retired < scheduled || model != TimingModel.ANALYTIC)
+			invalidate((int) Math.min(affected - retired, scheduled));
+	}
+	
+	public int[] getPredictorConfiguration() {
+		return prediction.getConfiguration();
+	}
+	
+	/**
+	 * Sets how loads are ordered against earlier stores, rescheduling from the first load.
+	 * @param configuration the ordinal of the {@link DisambiguationPolicy}, the cycles a
+	 * load takes to get its data forwarded from a store in the store queue, and the cycles
+	 * added when a load that ran ahead of a store to its address is replayed
+	 */
+	public void setLoadStoreConfiguration(int[] configuration) {
+		if (configuration.length != 3 || configuration[0] < 0 || configuration[0] >= DisambiguationPolicy.values().length ||
+				configuration[1] < 0 || configuration[2] < 0)
+			throw new IllegalArgumentException("Invalid load/store queue configuration");
+		
+		if (Arrays.equals(loadStore, configuration))
+			return;
+		
+		long affected = firstOfFunction[FunctionType.LOAD.ordinal()];
+		if (affected == -1)
+			affected = retired + count;
+		
+		if (affected < retired || (model != TimingModel.ANALYTIC && retired > 0))
+			throw new IllegalArgumentException("Retired instructions can not be rescheduled, run the program again instead");
+		
+		loadStore = configuration.clone();
+		if (affected - retired < scheduled || model != TimingModel.ANALYTIC)
+			invalidate((int) Math.min(affected - retired, scheduled));
+	}
+	
+	public int[] getLoadStoreConfiguration() {
+		return loadStore.clone();
+	}
+	
+	/**
+	 * Reads one of the widths that may follow the number of ROB entries in the first row
+	 * of the configuration, which are 1 when left out.
+	 */
+	private static int getWidth(int[][] configuration, int column) {
+		return (configuration[0].length > column)? configuration[0][column] : 1;
+	}
+	
+	/**
+	 * Returns the number of physical registers renamed onto, or 0 if renaming is unlimited.
+	 */
+	public int getPhysicalRegisters() {
+		return (configuration[0].length > 4)? configuration[0][4] : 0;
+	}
+	
 	public void clear() {
-		executed = new ArrayList<Instruction>();
+		Arrays.fill(executed, null);
+		Arrays.fill(firstOfFunction, -1);
+		head = 0;
+		count = 0;
+		retired = 0;
+		retiredStatistics = new ScheduleStatistics();
+		prediction.clear();
+		invalidate(0);
 	}
 	
+	private int index(int instruction) {
+		return (head + instruction) & (executed.length - 1);
+	}
+	
+	private void resize(int capacity) {
+		Instruction[] resized = new Instruction[capacity];
+		boolean[] resizedMispredictions = new boolean[capacity];
+		long[][] resizedTimings = new long[4][capacity];
+		byte[] resizedIssueCauses = new byte[capacity];
+		byte[] resizedStalls = new byte[capacity];
+		for (int i = 0; i < count; i++) {
+			resized[i] = executed[index(i)];
+			resizedMispredictions[i] = mispredictions[index(i)];
+			resizedIssueCauses[i] = issueCauses[index(i)];
+			resizedStalls[i] = stalls[index(i)];
+			for (int j = 0; j < 4; j++)
+				resizedTimings[j][i] = timings[j][index(i)];
+		}
+		executed = resized;
+		mispredictions = resizedMispredictions;
+		timings = resizedTimings;
+		issueCauses = resizedIssueCauses;
+		stalls = resizedStalls;
+		head = 0;
+	}
+	
+	/**
+	 * The scheduler state after a number of scheduled instructions, which is all that
+	 * scheduling the next one needs: the write cycle of the last writer of each register
+	 * of each hardware context, whether each context's last instruction was mispredicted,
+	 * the stores still in the store queue by address, the commit cycles of the instructions
+	 * occupying the ROB and reservation stations and of the writers holding a renamed
+	 * register, and the claimed bus and unit slots.
+	 */
+	private static class State {
+		
+		private int issueWidth;
+		private int commitWidth;
+		private long instructions;
+		private long lastIssue;
+		private int issuedAtLast;
+		private long lastCommit;
+		private int committedAtLast;
+		
+		// Whether the last instruction of each context was mispredicted, and when it committed
+		private boolean[] reset;
+		private long[] resetCommits;
+		private long[] writerCycles;
+		private AddressTable stores;
+		private int storesLimit;
+		private long storeAddressReady;
+		
+		// When the last instruction whose execution was computed had its operands, or its
+		// address for a load, and started executing, and how a load got its data
+		private long ready;
+		private long started;
+		private boolean forwarded;
+		private boolean replayed;
+		private long source;
+		private CycleQueue rob;
+		private CycleQueue[] stations;
+		private CycleSlots cdb;
+		
+		// Physical registers beyond the architectural ones, left null when unlimited
+		private CycleQueue renamed;
+		private int renameRegisters;
+		
+		// Cycles in which the units of each type are busy starting an instruction, for the
+		// types given an initiation interval
+		private int[] intervals;
+		private CycleSlots[] units;
+		
+		State(int[][] configuration, int threads) {
+			issueWidth = getWidth(configuration, 1);
+			commitWidth = getWidth(configuration, 2);
+			reset = new boolean[threads];
+			resetCommits = new long[threads];
+			writerCycles = new long[REGISTERS * threads];
+			stores = new AddressTable();
+			storesLimit = 1024;
+			rob = new CycleQueue(configuration[0][0]);
+			stations = new CycleQueue[configuration.length - 1];
+			for (int i = 0; i < stations.length; i++)
+				stations[i] = new CycleQueue(configuration[i + 1][0] * configuration[i + 1][1]);
+			cdb = new CycleSlots(getWidth(configuration, 3));
+			if (configuration[0].length > 4) {
+				renameRegisters = configuration[0][4] - REGISTERS * threads;
+				renamed = new CycleQueue(renameRegisters);
+			}
+			units = new CycleSlots[configuration.length - 1];
+			intervals = new int[units.length];
+			configure(configuration);
+		}
+		
+		private State(State state) {
+			issueWidth = state.issueWidth;
+			commitWidth = state.commitWidth;
+			instructions = state.instructions;
+			lastIssue = state.lastIssue;
+			issuedAtLast = state.issuedAtLast;
+			lastCommit = state.lastCommit;
+			committedAtLast = state.committedAtLast;
+			reset = state.reset.clone();
+			resetCommits = state.resetCommits.clone();
+			writerCycles = state.writerCycles.clone();
+			stores = state.stores.copy();
+			storesLimit = state.storesLimit;
+			storeAddressReady = state.storeAddressReady;
+			rob = state.rob.copy();
+			stations = new CycleQueue[state.stations.length];
+			for (int i = 0; i < stations.length; i++)
+				stations[i] = state.stations[i].copy();
+			cdb = state.cdb.copy();
+			renamed = (state.renamed == null)? null : state.renamed.copy();
+			renameRegisters = state.renameRegisters;
+			intervals = state.intervals.clone();
+			units = new CycleSlots[state.units.length];
+			for (int i = 0; i < units.length; i++)
+				if (state.units[i] != null)
+					units[i] = state.units[i].copy();
+		}
+		
+		/**
+		 * Sets up the slots of the unit types whose number of units or initiation interval
+		 * changed. None of their instructions were scheduled yet, so their slots start empty.
+		 */
+		void configure(int[][] configuration) {
+			for (int i = 0; i < units.length; i++) {
+				int[] row = configuration[i + 1];
+				int interval = (row.length > 3)? row[3] : 0;
+				if (interval == 0)
+					units[i] = null;
+				else if (units[i] == null || units[i].getCapacity() != row[0] || intervals[i] != interval)
+					units[i] = new CycleSlots(row[0]);
+				intervals[i] = interval;
+			}
+		}
+		
+		/**
+		 * Returns the cycle an instruction issued in the given cycle finishes executing in,
+		 * once every one of its source registers is written and, for a type of unit given an
+		 * initiation interval, one of its units can take it. A load also waits for the
+		 * addresses of earlier stores as the disambiguation policy requires, and takes its
+		 * data from the last earlier store to its address while that store has not committed.
+		 */
+		long getExecuted(Instruction instruction, long issued, int[] loadStore) {
+			FunctionType function = instruction.getFunction();
+			forwarded = false;
+			replayed = false;
+			source = -1;
+			if (function != FunctionType.LOAD || instruction.getEffectiveAddress() == -1) {
+				ready = getReady(instruction, function.getSourceOperands(), issued);
+				started = ready;
+				CycleSlots unit = (function.ordinal() < units.length)? units[function.ordinal()] : null;
+				if (unit != null) {
+					// A unit takes a new instruction every interval cycles, so it stays busy for them
+					unit.discardBefore(issued);
+					started = unit.claim(ready, intervals[function.ordinal()]);
+				}
+				return started + instruction.getExecutionTime();
+			}
+			
+			long start = getReady(instruction, ADDRESS_OPERAND, issued);
+			ready = start;
+			if (loadStore[0] == DisambiguationPolicy.CONSERVATIVE.ordinal())
+				start = Math.max(start, storeAddressReady);
+			
+			int store = stores.find(instruction.getEffectiveAddress());
+			if (store == -1 || stores.get(store, AddressTable.COMMITTED) <= start) {
+				started = start;
+				return start + instruction.getExecutionTime();
+			}
+			
+			// A load that started before the store's address was known read stale data, and
+			// is replayed once the address is known
+			if (stores.get(store, AddressTable.ADDRESS_READY) > start) {
+				replayed = true;
+				start = stores.get(store, AddressTable.ADDRESS_READY) + loadStore[2];
+			}
+			forwarded = true;
+			source = stores.get(store, AddressTable.SEQUENCE);
+			started = Math.max(start, stores.get(store, AddressTable.DATA_READY));
+			return started + loadStore[1];
+		}
+		
+		/**
+		 * Returns the cycle in which the given source registers of an instruction are all
+		 * written, or its issue cycle if later.
+		 */
+		private long getReady(Instruction instruction, int[] sources, long issued) {
+			long ready = issued;
+			for (int source : sources) {
+				int register = instruction.getRegisterNumber(source);
+				if (register != -1)
+					ready = Math.max(ready, writerCycles[instruction.getThread() * REGISTERS + register]);
+			}
+			return ready;
+		}
+		
+		/**
+		 * Returns the first cycle the front end fetches the next instruction of a context
+		 * in after its last one was mispredicted, or 0 if it was not.
+		 * @param penalty the cycles taken to refill the front end once it commits
+		 */
+		long getResume(int thread, int penalty) {
+			return reset[thread]? resetCommits[thread] + 1 + penalty : 0;
+		}
+		
+		/**
+		 * Updates the state with an instruction whose timings were computed from it.
+		 */
+		void record(Instruction instruction, boolean mispredicted, long[] timing) {
+			FunctionType function = instruction.getFunction();
+			
+			rob.add(timing[COMMITTED]);
+			if (function.ordinal() < stations.length)
+				stations[function.ordinal()].add(timing[COMMITTED]);
+			
+			if (function.writesRegister()) {
+				writerCycles[instruction.getThread() * REGISTERS + instruction.getDestination()] = timing[WRITTEN];
+				if (renamed != null)
+					renamed.add(timing[COMMITTED]);
+			} else if (function == FunctionType.STORE) {
+				long addressReady = getReady(instruction, ADDRESS_OPERAND, timing[ISSUED]);
+				long dataReady = getReady(instruction, DATA_OPERAND, timing[ISSUED]);
+				addStore(instruction.getEffectiveAddress(), instructions, addressReady, dataReady, timing);
+				storeAddressReady = Math.max(storeAddressReady, addressReady);
+			}
+			
+			reset[instruction.getThread()] = mispredicted;
+			resetCommits[instruction.getThread()] = timing[COMMITTED];
+			
+			issuedAtLast = (instructions > 0 && timing[ISSUED] == lastIssue)? issuedAtLast + 1 : 1;
+			committedAtLast = (instructions > 0 && timing[COMMITTED] == lastCommit)? committedAtLast + 1 : 1;
+			instructions++;
+			lastIssue = timing[ISSUED];
+			lastCommit = timing[COMMITTED];
+		}
+		
+		/**
+		 * Puts a store in the store queue, given its sequence number in the run.
+		 */
+		void addStore(int address, long sequence, long addressReady, long dataReady, long[] timing) {
+			stores.put(address, sequence, addressReady, dataReady, timing[COMMITTED]);
+			if (stores.size() > storesLimit) {
+				// Loads issue no earlier than this store, so the stores committed by then are gone
+				stores.prune(timing[ISSUED]);
+				storesLimit = Math.max(1024, stores.size() * 2);
+			}
+		}
+		
+		/**
+		 * Returns the earliest cycle the next instruction can issue in, which is the one
+		 * of the last issued instruction while it has issue slots left.
+		 */
+		long getIssueCandidate() {
+			return (issuedAtLast < issueWidth)? lastIssue : lastIssue + 1;
+		}
+		
+		long getCommitCandidate() {
+			return (committedAtLast < commitWidth)? lastCommit : lastCommit + 1;
+		}
+		
+		/**
+		 * Updates the state with an instruction whose timings were already computed.
+		 */
+		void replay(Instruction instruction, boolean mispredicted, long[] timing, int[] loadStore) {
+			for (CycleQueue occupied : getQueues())
+				occupied.removeUpTo(timing[ISSUED]);
+			cdb.discardBefore(timing[ISSUED]);
+			cdb.claim(timing[WRITTEN]);
+			getExecuted(instruction, timing[ISSUED], loadStore);
+			record(instruction, mispredicted, timing);
+		}
+		
+		/**
+		 * Lists what the timings of the instructions scheduled next depend on, other than
+		 * the stores in the store queue, as cycles relative to the last issue. No later
+		 * instruction issues before it, so earlier cycles are all alike. Two states with the
+		 * same signature schedule the same instructions alike, one shifted from the other,
+		 * as long as their loads find matching stores.
+		 */
+		long[] getSignature() {
+			long base = lastIssue;
+			long end = getLastClaimable();
+			int size = 4 + 2 * reset.length + writerCycles.length + (int) (end - base + 1) * (1 + units.length);
+			for (CycleQueue occupied : getQueues()) {
+				occupied.removeUpTo(base);
+				size += 1 + occupied.size();
+			}
+			
+			long[] signature = new long[size];
+			int next = 0;
+			signature[next++] = issuedAtLast;
+			signature[next++] = committedAtLast;
+			signature[next++] = lastCommit - base;
+			for (int i = 0; i < reset.length; i++) {
+				signature[next++] = reset[i]? 1 : 0;
+				signature[next++] = reset[i]? resetCommits[i] - base : 0;
+			}
+			signature[next++] = Math.max(storeAddressReady, base) - base;
+			for (long cycle : writerCycles)
+				signature[next++] = Math.max(cycle, base) - base;
+			for (CycleQueue occupied : getQueues()) {
+				signature[next++] = occupied.size();
+				for (int i = 0; i < occupied.size(); i++)
+					signature[next++] = occupied.get(i) - base;
+			}
+			for (long cycle = base; cycle <= end; cycle++) {
+				signature[next++] = cdb.getClaims(cycle);
+				for (CycleSlots unit : units)
+					signature[next++] = (unit == null)? 0 : unit.getClaims(cycle);
+			}
+			return signature;
+		}
+		
+		/**
+		 * Moves the state by the given number of cycles, as if a number of instructions
+		 * were scheduled that left it as it was but that much later. The store queue is
+		 * left alone, since its stores are kept by address.
+		 */
+		void shift(long cycles, long instructions) {
+			long base = lastIssue;
+			long end = getLastClaimable();
+			for (int i = 0; i < writerCycles.length; i++)
+				writerCycles[i] = Math.max(writerCycles[i], base) + cycles;
+			storeAddressReady = Math.max(storeAddressReady, base) + cycles;
+			for (CycleQueue occupied : getQueues()) {
+				occupied.removeUpTo(base);
+				occupied.shift(cycles);
+			}
+			cdb.shift(base, end, cycles);
+			for (CycleSlots unit : units)
+				if (unit != null)
+					unit.shift(base, end, cycles);
+			
+			for (int i = 0; i < resetCommits.length; i++)
+				resetCommits[i] += cycles;
+			lastIssue += cycles;
+			lastCommit += cycles;
+			this.instructions += instructions;
+		}
+		
+		/**
+		 * Returns the last cycle a bus or unit may have been claimed in, since every
+		 * instruction writes before it commits.
+		 */
+		private long getLastClaimable() {
+			int interval = 0;
+			for (int i : intervals)
+				interval = Math.max(interval, i);
+			return lastCommit + interval;
+		}
+		
+		private CycleQueue[] getQueues() {
+			CycleQueue[] queues = Arrays.copyOf(stations, stations.length + ((renamed == null)? 1 : 2));
+			queues[stations.length] = rob;
+			if (renamed != null)
+				queues[stations.length + 1] = renamed;
+			return queues;
+		}
+		
+		State copy() {
+			return new State(this);
+		}
+	
+	}
+
 }
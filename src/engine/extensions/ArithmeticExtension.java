@@ -0,0 +1,67 @@
+package engine.extensions;
+
+import engine.types.FunctionType;
+import engine.types.Register;
+
+/**
+ * Multiplication, division and shifts, executed on the multiply and divide units and on
+ * the ALU. Shift amounts use the low 4 bits of the register or immediate.
+ */
+public class ArithmeticExtension extends InstructionExtension {
+	
+	public String getName() {
+		return "Arithmetic";
+	}
+	
+	public Object[] mul(Register r1, Register r2, Register r3) {
+		r1.setValue((short)(r2.getValue() * r3.getValue()));
+		return new Object[]{FunctionType.MULTIPLY, r1.getNumber(), -1};
+	}
+	
+	public Object[] div(Register r1, Register r2, Register r3) {
+		if (r3.getValue() == 0)
+			throw new IllegalArgumentException("Division by zero");
+		
+		r1.setValue((short)(r2.getValue() / r3.getValue()));
+		return new Object[]{FunctionType.DIVIDE, r1.getNumber(), -1};
+	}
+	
+	public Object[] mod(Register r1, Register r2, Register r3) {
+		if (r3.getValue() == 0)
+			throw new IllegalArgumentException("Division by zero");
+		
+		r1.setValue((short)(r2.getValue() % r3.getValue()));
+		return new Object[]{FunctionType.DIVIDE, r1.getNumber(), -1};
+	}
+	
+	public Object[] sll(Register r1, Register r2, Register r3) {
+		r1.setValue((short)(r2.getValue() << (r3.getValue() & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+	
+	public Object[] srl(Register r1, Register r2, Register r3) {
+		r1.setValue((short)((r2.getValue() & 0xffff) >>> (r3.getValue() & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+	
+	public Object[] sra(Register r1, Register r2, Register r3) {
+		r1.setValue((short)(r2.getValue() >> (r3.getValue() & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+	
+	public Object[] slli(Register r1, Register r2, int immediate) {
+		r1.setValue((short)(r2.getValue() << (immediate & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+	
+	public Object[] srli(Register r1, Register r2, int immediate) {
+		r1.setValue((short)((r2.getValue() & 0xffff) >>> (immediate & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+	
+	public Object[] srai(Register r1, Register r2, int immediate) {
+		r1.setValue((short)(r2.getValue() >> (immediate & 15)));
+		return new Object[]{FunctionType.ALU, r1.getNumber(), -1};
+	}
+
+}
@@ -0,0 +1,21 @@
+package engine.extensions;
+
+import engine.Processor;
+
+/**
+ * A set of instructions added to the base instruction set. As in the base set, every
+ * public method returning an Object[] is an instruction named after the method, taking
+ * Register or int operands and returning the function type of the unit executing it,
+ * the destination register and the effective address, or -1 for either when unused.
+ */
+public abstract class InstructionExtension {
+	
+	protected Processor processor;
+	
+	public void setProcessor(Processor processor) {
+		this.processor = processor;
+	}
+	
+	public abstract String getName();
+
+}
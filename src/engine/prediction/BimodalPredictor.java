@@ -0,0 +1,37 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+/**
+ * A table of 2-bit saturating counters indexed by the branch address.
+ */
+public class BimodalPredictor implements DirectionPredictor {
+	
+	private byte[] counters;
+	
+	public BimodalPredictor(int entries) {
+		counters = new byte[entries];
+		Arrays.fill(counters, (byte) 2);
+	}
+	
+	public boolean predict(int address, int offset) {
+		return counters[index(address)] >= 2;
+	}
+	
+	public void update(int address, int offset, boolean taken) {
+		int index = index(address);
+		counters[index] = count(counters[index], taken);
+	}
+	
+	private int index(int address) {
+		return (address >> 1) & (counters.length - 1);
+	}
+	
+	static byte count(byte counter, boolean up) {
+		if (up)
+			return (counter < 3)? (byte) (counter + 1) : counter;
+		
+		return (counter > 0)? (byte) (counter - 1) : counter;
+	}
+	
+}
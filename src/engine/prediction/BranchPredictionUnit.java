@@ -0,0 +1,152 @@
+package engine.prediction;
+
+import engine.Helpers;
+import engine.types.FunctionType;
+import engine.types.Instruction;
+import engine.types.PredictorType;
+
+/**
+ * The front end's view of control flow: predicts executed branches with a direction
+ * predictor and jumps with a branch target buffer and return address stack, in program
+ * order, and keeps per address statistics of the outcomes.
+ *
+ * The configuration holds the predictor type, the entries of its tables, its global
+ * history length in bits, the BTB and RAS entries and the mispredict penalty in cycles.
+ * Jumps are not predicted, and so never mispredicted, when the BTB has no entries.
+ */
+public class BranchPredictionUnit {
+	
+	private int[] configuration;
+	private DirectionPredictor predictor;
+	private BranchTargetBuffer btb;
+	private ReturnAddressStack ras;
+	private BranchStatistics statistics;
+	private int predictedTarget;
+	
+	public BranchPredictionUnit(int[] configuration) {
+		if (configuration.length != 6 || configuration[0] < 0 || configuration[0] >= PredictorType.values().length)
+			throw new IllegalArgumentException("Invalid branch predictor configuration");
+		
+		if (!Helpers.isPowerOf2(configuration[1]))
+			throw new IllegalArgumentException("Predictor entries (" + configuration[1] + ") must be a power of 2");
+		
+		if (configuration[2] < 0 || configuration[2] > 64)
+			throw new IllegalArgumentException("Predictor history must be between 0 and 64 bits");
+		
+		if (configuration[3] != 0 && !Helpers.isPowerOf2(configuration[3]))
+			throw new IllegalArgumentException("BTB entries (" + configuration[3] + ") must be 0 or a power of 2");
+		
+		if (configuration[4] < 0 || configuration[5] < 0)
+			throw new IllegalArgumentException("Invalid branch predictor configuration");
+		
+		this.configuration = configuration;
+		clear();
+	}
+	
+	/**
+	 * Predicts the given executed instruction if it is a branch or jump, and trains the
+	 * predictors with its actual outcome.
+	 * @return whether the instruction was mispredicted
+	 */
+	public boolean mispredicts(Instruction instruction) {
+		boolean mispredicted;
+		if (instruction.getFunction() == FunctionType.BRANCH)
+			mispredicted = mispredictsBranch(instruction.getAddress(), (Integer)instruction.getOperands()[2], instruction.isTaken());
+		else if (instruction.getFunction() == FunctionType.JUMP_AND_LINK && btb != null)
+			mispredicted = mispredictsJump(instruction.getAddress(), instruction.getEffectiveAddress(), instruction.getDestination() != 0);
+		else
+			return false;
+		
+		statistics.add(instruction, mispredicted);
+		return mispredicted;
+	}
+	
+	/**
+	 * Predicts a recorded branch or jump, as {@link #mispredicts(Instruction)} does.
+	 */
+	public boolean mispredicts(BranchTrace trace, int branch) {
+		boolean mispredicted;
+		if (!trace.isJump(branch))
+			mispredicted = mispredictsBranch(trace.getAddress(branch), trace.getOffset(branch), trace.isTaken(branch));
+		else if (btb != null)
+			mispredicted = mispredictsJump(trace.getAddress(branch), trace.getTarget(branch), trace.isCall(branch));
+		else
+			return false;
+		
+		statistics.add(trace.getAddress(branch), mispredicted);
+		return mispredicted;
+	}
+	
+	private boolean mispredictsBranch(int address, int offset, boolean taken) {
+		boolean predicted = predictor.predict(address, offset);
+		predictedTarget = address + 2 + ((predicted)? offset : 0);
+		predictor.update(address, offset, taken);
+		return predicted != taken;
+	}
+	
+	/**
+	 * Jumps that link R0 are taken as returns, and the others as calls.
+	 */
+	private boolean mispredictsJump(int address, int actualTarget, boolean call) {
+		int target = -1;
+		if (!call && ras != null)
+			target = ras.pop();
+		if (target == -1)
+			target = btb.lookup(address);
+		if (target == -1)
+			target = address + 2;
+		
+		if (call && ras != null)
+			ras.push(address + 2);
+		btb.update(address, actualTarget);
+		predictedTarget = target;
+		return target != actualTarget;
+	}
+	
+	/**
+	 * Returns the address the front end fetched from after the last branch or jump it
+	 * predicted, which is where a mispredicted one sent it down the wrong path.
+	 */
+	public int getPredictedTarget() {
+		return predictedTarget;
+	}
+	
+	public int getPenalty() {
+		return configuration[5];
+	}
+	
+	public BranchStatistics getStatistics() {
+		return statistics;
+	}
+	
+	public int[] getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Forgets everything learned and the statistics.
+	 */
+	public void clear() {
+		int entries = configuration[1], history = configuration[2];
+		switch (PredictorType.values()[configuration[0]]) {
+			case BIMODAL:
+				predictor = new BimodalPredictor(entries);
+				break;
+			case GSHARE:
+				predictor = new GsharePredictor(entries, history);
+				break;
+			case TOURNAMENT:
+				predictor = new TournamentPredictor(entries, history);
+				break;
+			case TAGE:
+				predictor = new TagePredictor(entries, history);
+				break;
+			default:
+				predictor = new StaticPredictor();
+		}
+		btb = (configuration[3] == 0)? null : new BranchTargetBuffer(configuration[3]);
+		ras = (configuration[4] == 0)? null : new ReturnAddressStack(configuration[4]);
+		statistics = new BranchStatistics();
+	}
+	
+}
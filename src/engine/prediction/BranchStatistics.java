@@ -0,0 +1,81 @@
+package engine.prediction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import engine.types.Instruction;
+
+/**
+ * Prediction counts of every executed branch and jump, by instruction address.
+ */
+public class BranchStatistics {
+	
+	private HashMap<Integer, long[]> counts;
+	private HashMap<Integer, Instruction> instructions;
+	private long branches;
+	private long mispredictions;
+	
+	public BranchStatistics() {
+		counts = new HashMap<Integer, long[]>();
+		instructions = new HashMap<Integer, Instruction>();
+	}
+	
+	public void add(Instruction instruction, boolean mispredicted) {
+		if (!instructions.containsKey(instruction.getAddress()))
+			instructions.put(instruction.getAddress(), instruction);
+		add(instruction.getAddress(), mispredicted);
+	}
+	
+	public void add(int address, boolean mispredicted) {
+		long[] count = counts.get(address);
+		if (count == null) {
+			count = new long[2];
+			counts.put(address, count);
+		}
+		count[0]++;
+		branches++;
+		if (mispredicted) {
+			count[1]++;
+			mispredictions++;
+		}
+	}
+	
+	public long getBranches() {
+		return branches;
+	}
+	
+	public long getMispredictions() {
+		return mispredictions;
+	}
+	
+	public double getAccuracy() {
+		return (branches == 0)? 1 : 1 - mispredictions * 1.0 / branches;
+	}
+	
+	/**
+	 * Returns the addresses of the executed branches in ascending order.
+	 */
+	public int[] getAddresses() {
+		int[] addresses = new int[counts.size()];
+		int i = 0;
+		for (int address : counts.keySet())
+			addresses[i++] = address;
+		Arrays.sort(addresses);
+		return addresses;
+	}
+	
+	public Instruction getInstruction(int address) {
+		return instructions.get(address);
+	}
+	
+	public long getBranches(int address) {
+		long[] count = counts.get(address);
+		return (count == null)? 0 : count[0];
+	}
+	
+	public long getMispredictions(int address) {
+		long[] count = counts.get(address);
+		return (count == null)? 0 : count[1];
+	}
+	
+}
@@ -0,0 +1,37 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+/**
+ * A direct mapped cache of the last target of indirect jumps, by jump address.
+ */
+public class BranchTargetBuffer {
+	
+	private int[] addresses;
+	private int[] targets;
+	
+	public BranchTargetBuffer(int entries) {
+		addresses = new int[entries];
+		Arrays.fill(addresses, -1);
+		targets = new int[entries];
+	}
+	
+	/**
+	 * @return the last target of the jump at the given address, or -1 if not cached
+	 */
+	public int lookup(int address) {
+		int index = index(address);
+		return (addresses[index] == address)? targets[index] : -1;
+	}
+	
+	public void update(int address, int target) {
+		int index = index(address);
+		addresses[index] = address;
+		targets[index] = target;
+	}
+	
+	private int index(int address) {
+		return (address >> 1) & (addresses.length - 1);
+	}
+	
+}
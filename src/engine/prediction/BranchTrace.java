@@ -0,0 +1,103 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+import engine.types.FunctionType;
+import engine.types.Instruction;
+
+/**
+ * The outcomes of the branches and jumps of a run in program order, kept in primitive
+ * arrays so that a run can be captured once and replayed through any number of
+ * predictors without simulating it again.
+ */
+public class BranchTrace {
+	
+	static final byte JUMP = 1;
+	static final byte TAKEN = 2;
+	static final byte CALL = 4;
+	
+	private int[] addresses;
+	private int[] targets;
+	private int[] offsets;
+	private byte[] flags;
+	private int size;
+	private long instructions;
+	
+	public BranchTrace() {
+		clear();
+	}
+	
+	/**
+	 * Counts an executed instruction, recording its outcome if it is a branch or jump.
+	 */
+	public void add(Instruction instruction) {
+		instructions++;
+		FunctionType function = instruction.getFunction();
+		if (function != FunctionType.BRANCH && function != FunctionType.JUMP_AND_LINK)
+			return;
+		
+		if (size == addresses.length) {
+			addresses = Arrays.copyOf(addresses, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+			flags = Arrays.copyOf(flags, size * 2);
+		}
+		
+		addresses[size] = instruction.getAddress();
+		targets[size] = instruction.getEffectiveAddress();
+		if (function == FunctionType.BRANCH) {
+			offsets[size] = (Integer)instruction.getOperands()[2];
+			flags[size] = instruction.isTaken()? TAKEN : 0;
+		} else
+			flags[size] = (byte) (JUMP | ((instruction.getDestination() != 0)? CALL : 0));
+		size++;
+	}
+	
+	/**
+	 * Returns the number of recorded branches and jumps.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of executed instructions, including the ones not recorded.
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+	
+	public int getAddress(int branch) {
+		return addresses[branch];
+	}
+	
+	public int getTarget(int branch) {
+		return targets[branch];
+	}
+	
+	public int getOffset(int branch) {
+		return offsets[branch];
+	}
+	
+	public boolean isJump(int branch) {
+		return (flags[branch] & JUMP) != 0;
+	}
+	
+	public boolean isTaken(int branch) {
+		return (flags[branch] & TAKEN) != 0;
+	}
+	
+	public boolean isCall(int branch) {
+		return (flags[branch] & CALL) != 0;
+	}
+	
+	public void clear() {
+		addresses = new int[1024];
+		targets = new int[1024];
+		offsets = new int[1024];
+		flags = new byte[1024];
+		size = 0;
+		instructions = 0;
+	}
+	
+}
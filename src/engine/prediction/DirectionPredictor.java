@@ -0,0 +1,13 @@
+package engine.prediction;
+
+/**
+ * Predicts whether conditional branches are taken, learning from their outcomes. Each
+ * prediction is followed by the update with the outcome of the same branch.
+ */
+public interface DirectionPredictor {
+	
+	boolean predict(int address, int offset);
+	
+	void update(int address, int offset, boolean taken);
+	
+}
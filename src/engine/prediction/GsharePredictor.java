@@ -0,0 +1,36 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+/**
+ * A table of 2-bit saturating counters indexed by the branch address XORed with the
+ * global history of branch outcomes.
+ */
+public class GsharePredictor implements DirectionPredictor {
+	
+	private byte[] counters;
+	private int history;
+	private int historyMask;
+	
+	public GsharePredictor(int entries, int historyBits) {
+		counters = new byte[entries];
+		Arrays.fill(counters, (byte) 2);
+		// The history is an int, so that longer ones keep their last 32 outcomes
+		historyMask = (historyBits >= 32)? -1 : (1 << historyBits) - 1;
+	}
+	
+	public boolean predict(int address, int offset) {
+		return counters[index(address)] >= 2;
+	}
+	
+	public void update(int address, int offset, boolean taken) {
+		int index = index(address);
+		counters[index] = BimodalPredictor.count(counters[index], taken);
+		history = ((history << 1) | (taken? 1 : 0)) & historyMask;
+	}
+	
+	private int index(int address) {
+		return ((address >> 1) ^ history) & (counters.length - 1);
+	}
+	
+}
@@ -0,0 +1,119 @@
+package engine.prediction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import engine.types.PredictorType;
+
+/**
+ * The accuracy of one predictor configuration over a captured branch trace. Many
+ * configurations are evaluated together over the same trace, in parallel since each
+ * replays it through predictors of its own.
+ */
+public class PredictorEvaluation {
+	
+	private int[] configuration;
+	private long instructions;
+	private BranchStatistics statistics;
+	
+	private PredictorEvaluation(int[] configuration, BranchTrace trace) {
+		this.configuration = configuration;
+		BranchPredictionUnit prediction = new BranchPredictionUnit(configuration);
+		for (int i = 0; i < trace.size(); i++)
+			prediction.mispredicts(trace, i);
+		
+		instructions = trace.getInstructions();
+		statistics = prediction.getStatistics();
+	}
+	
+	/**
+	 * Replays the trace through every configuration, sharing the work among the
+	 * available processors.
+	 * @return the evaluations in the order of the configurations
+	 */
+	public static PredictorEvaluation[] evaluate(final BranchTrace trace, final List<int[]> configurations) {
+		// Reports invalid configurations before any work starts
+		for (int[] configuration : configurations)
+			new BranchPredictionUnit(configuration);
+		
+		final PredictorEvaluation[] evaluations = new PredictorEvaluation[configurations.size()];
+		IntStream.range(0, evaluations.length).parallel().forEach(
+				i -> evaluations[i] = new PredictorEvaluation(configurations.get(i), trace));
+		return evaluations;
+	}
+	
+	/**
+	 * Returns the configurations of every predictor type over a range of table sizes and
+	 * history lengths, keeping the BTB, RAS and penalty of the given configuration.
+	 */
+	public static List<int[]> getSweep(int[] configuration) {
+		List<int[]> sweep = new ArrayList<int[]>();
+		for (PredictorType type : PredictorType.values())
+			for (int entries = 256; entries <= 16384; entries *= 4)
+				for (int history = 8; history <= 32; history *= 2) {
+					if (type == PredictorType.STATIC && (entries > 256 || history > 8))
+						continue;
+					
+					if (type == PredictorType.BIMODAL && history > 8)
+						continue;
+					
+					int[] variant = configuration.clone();
+					variant[0] = type.ordinal();
+					variant[1] = entries;
+					variant[2] = history;
+					sweep.add(variant);
+				}
+		return sweep;
+	}
+	
+	/**
+	 * Lists the evaluations from the fewest mispredictions per thousand instructions.
+	 */
+	public static Object[] display(PredictorEvaluation[] evaluations) {
+		String[] headers = {"Predictor", "Entries", "History", "BTB", "RAS", "Mispredicted", "Accuracy", "MPKI"};
+		PredictorEvaluation[] sorted = evaluations.clone();
+		Arrays.sort(sorted, (a, b) -> Long.compare(a.getMispredictions(), b.getMispredictions()));
+		String[][] data = new String[sorted.length][8];
+		for (int i = 0; i < sorted.length; i++) {
+			int[] configuration = sorted[i].configuration;
+			String type = PredictorType.values()[configuration[0]].toString();
+			data[i][0] = type.charAt(0) + type.substring(1).toLowerCase();
+			for (int j = 1; j < 5; j++)
+				data[i][j] = configuration[j] + "";
+			data[i][5] = sorted[i].getMispredictions() + "";
+			data[i][6] = String.format("%.2f%%", sorted[i].getAccuracy() * 100);
+			data[i][7] = String.format("%.2f", sorted[i].getMpki());
+		}
+		return new Object[]{data, headers};
+	}
+	
+	public int[] getConfiguration() {
+		return configuration;
+	}
+	
+	public long getBranches() {
+		return statistics.getBranches();
+	}
+	
+	public long getMispredictions() {
+		return statistics.getMispredictions();
+	}
+	
+	public double getAccuracy() {
+		return statistics.getAccuracy();
+	}
+	
+	/**
+	 * Returns the mispredictions per thousand executed instructions.
+	 */
+	public double getMpki() {
+		return (instructions == 0)? 0 : statistics.getMispredictions() * 1000.0 / instructions;
+	}
+	
+	public BranchStatistics getStatistics() {
+		return statistics;
+	}
+	
+}
@@ -0,0 +1,36 @@
+package engine.prediction;
+
+/**
+ * A fixed size stack of return addresses pushed by calls and popped by returns, which
+ * overwrites the oldest address when full.
+ */
+public class ReturnAddressStack {
+	
+	private int[] addresses;
+	private int top;
+	private int size;
+	
+	public ReturnAddressStack(int entries) {
+		addresses = new int[entries];
+	}
+	
+	public void push(int address) {
+		top = (top + 1) % addresses.length;
+		addresses[top] = address;
+		size = Math.min(size + 1, addresses.length);
+	}
+	
+	/**
+	 * @return the most recently pushed address, or -1 if empty
+	 */
+	public int pop() {
+		if (size == 0)
+			return -1;
+		
+		int address = addresses[top];
+		top = (top + addresses.length - 1) % addresses.length;
+		size--;
+		return address;
+	}
+	
+}
@@ -0,0 +1,16 @@
+package engine.prediction;
+
+/**
+ * Predicts branches with a non-negative offset as taken and the others as not taken,
+ * without learning.
+ */
+public class StaticPredictor implements DirectionPredictor {
+	
+	public boolean predict(int address, int offset) {
+		return offset >= 0;
+	}
+	
+	public void update(int address, int offset, boolean taken) {
+	}
+	
+}
@@ -0,0 +1,135 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+/**
+ * A reduced TAGE predictor: a bimodal base table backed by four tagged tables indexed
+ * with geometrically longer slices of the global history. The longest matching table
+ * provides the prediction, and a misprediction allocates an entry in a longer table
+ * whose entry is no longer useful.
+ */
+public class TagePredictor implements DirectionPredictor {
+	
+	private static final int TABLES = 4;
+	private static final int TAG_BITS = 8;
+	private static final int AGING_PERIOD = 1 << 18;
+	
+	private BimodalPredictor base;
+	private int[] lengths;
+	private int indexBits;
+	private byte[][] counters;
+	private short[][] tags;
+	private byte[][] useful;
+	private long history;
+	private int updates;
+	
+	// Table entries and tags of the branch being predicted
+	private int[] indices;
+	private int[] branchTags;
+	
+	/**
+	 * @param entries the number of entries of the base and each tagged table
+	 * @param historyBits the history length of the longest table, at most 64
+	 */
+	public TagePredictor(int entries, int historyBits) {
+		base = new BimodalPredictor(entries);
+		indexBits = Integer.numberOfTrailingZeros(entries);
+		lengths = new int[TABLES];
+		counters = new byte[TABLES][entries];
+		tags = new short[TABLES][entries];
+		useful = new byte[TABLES][entries];
+		for (int i = 0; i < TABLES; i++) {
+			lengths[i] = Math.max(1, historyBits >> (TABLES - 1 - i));
+			Arrays.fill(tags[i], (short) -1);
+		}
+		indices = new int[TABLES];
+		branchTags = new int[TABLES];
+	}
+	
+	public boolean predict(int address, int offset) {
+		lookup(address);
+		int provider = getProvider(TABLES);
+		return (provider == -1)? base.predict(address, offset) : counters[provider][indices[provider]] >= 0;
+	}
+	
+	public void update(int address, int offset, boolean taken) {
+		lookup(address);
+		int provider = getProvider(TABLES);
+		int alternate = (provider == -1)? -1 : getProvider(provider);
+		boolean alternatePrediction = (alternate == -1)? base.predict(address, offset) : counters[alternate][indices[alternate]] >= 0;
+		boolean prediction = (provider == -1)? alternatePrediction : counters[provider][indices[provider]] >= 0;
+		
+		if (provider == -1)
+			base.update(address, offset, taken);
+		else {
+			int index = indices[provider];
+			if (prediction != alternatePrediction)
+				useful[provider][index] = (byte) ((prediction == taken)? Math.min(3, useful[provider][index] + 1) : Math.max(0, useful[provider][index] - 1));
+			
+			counters[provider][index] = (byte) (taken? Math.min(3, counters[provider][index] + 1) : Math.max(-4, counters[provider][index] - 1));
+		}
+		
+		if (prediction != taken)
+			allocate(provider + 1, taken);
+		
+		if (++updates % AGING_PERIOD == 0)
+			for (byte[] table : useful)
+				for (int i = 0; i < table.length; i++)
+					table[i] >>= 1;
+		
+		history = (history << 1) | (taken? 1 : 0);
+	}
+	
+	/**
+	 * Takes over the first entry that is not useful in the tables from the given one on,
+	 * or makes the entries of all of them less useful if there is none.
+	 */
+	private void allocate(int from, boolean taken) {
+		for (int i = from; i < TABLES; i++)
+			if (useful[i][indices[i]] == 0) {
+				tags[i][indices[i]] = (short) branchTags[i];
+				counters[i][indices[i]] = (byte) (taken? 0 : -1);
+				return;
+			}
+		
+		for (int i = from; i < TABLES; i++)
+			useful[i][indices[i]]--;
+	}
+	
+	/**
+	 * Returns the longest table below the given one with an entry tagged for the branch,
+	 * or -1 if none.
+	 */
+	private int getProvider(int below) {
+		for (int i = below - 1; i >= 0; i--)
+			if (tags[i][indices[i]] == branchTags[i])
+				return i;
+		
+		return -1;
+	}
+	
+	private void lookup(int address) {
+		int pc = address >> 1;
+		for (int i = 0; i < TABLES; i++) {
+			indices[i] = (pc ^ (pc >>> indexBits) ^ fold(lengths[i], indexBits) ^ i) & ((1 << indexBits) - 1);
+			branchTags[i] = (pc ^ fold(lengths[i], TAG_BITS) ^ (fold(lengths[i], TAG_BITS - 1) << 1)) & ((1 << TAG_BITS) - 1);
+		}
+	}
+	
+	/**
+	 * XORs the given number of most recent outcomes down to the given number of bits.
+	 */
+	private int fold(int length, int bits) {
+		if (bits == 0)
+			return 0;
+		
+		long slice = (length >= 64)? history : history & ((1L << length) - 1);
+		long folded = 0;
+		while (slice != 0) {
+			folded ^= slice & ((1L << bits) - 1);
+			slice >>>= bits;
+		}
+		return (int) folded;
+	}
+	
+}
@@ -0,0 +1,45 @@
+package engine.prediction;
+
+import java.util.Arrays;
+
+/**
+ * Chooses between a bimodal and a gshare predictor per branch, with a table of 2-bit
+ * counters trained towards whichever of the two was right when they disagree.
+ */
+public class TournamentPredictor implements DirectionPredictor {
+	
+	private BimodalPredictor local;
+	private GsharePredictor global;
+	private byte[] choosers;
+	
+	public TournamentPredictor(int entries, int historyBits) {
+		local = new BimodalPredictor(entries);
+		global = new GsharePredictor(entries, historyBits);
+		choosers = new byte[entries];
+		Arrays.fill(choosers, (byte) 2);
+	}
+	
+	public boolean predict(int address, int offset) {
+		if (choosers[index(address)] >= 2)
+			return global.predict(address, offset);
+		
+		return local.predict(address, offset);
+	}
+	
+	public void update(int address, int offset, boolean taken) {
+		boolean localPrediction = local.predict(address, offset);
+		boolean globalPrediction = global.predict(address, offset);
+		if (localPrediction != globalPrediction) {
+			int index = index(address);
+			choosers[index] = BimodalPredictor.count(choosers[index], globalPrediction == taken);
+		}
+		
+		local.update(address, offset, taken);
+		global.update(address, offset, taken);
+	}
+	
+	private int index(int address) {
+		return (address >> 1) & (choosers.length - 1);
+	}
+	
+}
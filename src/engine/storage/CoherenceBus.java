@@ -0,0 +1,108 @@
+package engine.storage;
+
+import java.util.ArrayList;
+
+/**
+ * A snooping bus keeping the first data cache levels of several cores coherent under
+ * MESI. A line is modified while dirty, shared while another cache may hold it too, and
+ * exclusive otherwise, so that writing to it needs no bus transaction unless shared. A
+ * read miss makes the other copies shared, after a modified one is written back, and a
+ * write miss or a write to a shared line invalidates them. The caches attached must only
+ * be accessed while holding the lock of the memory they share.
+ */
+public class CoherenceBus {
+	
+	private ArrayList<DataCache> caches;
+	private long reads;
+	private long writes;
+	private long upgrades;
+	private long flushes;
+	private long invalidations;
+	
+	public CoherenceBus() {
+		caches = new ArrayList<DataCache>();
+	}
+	
+	public void attach(DataCache cache) {
+		caches.add(cache);
+		cache.setCoherenceBus(this);
+	}
+	
+	/**
+	 * Puts a read miss on the bus, which every other cache holding the line snoops.
+	 * @return whether another cache holds the line, which is then shared
+	 */
+	boolean read(DataCache requester, int address) {
+		reads++;
+		boolean shared = false;
+		for (DataCache cache : caches)
+			if (cache != requester && cache.isFound(address)) {
+				if (cache.snoop(address, false))
+					flushes++;
+				shared = true;
+			}
+		return shared;
+	}
+	
+	/**
+	 * Puts a write on the bus, invalidating every other copy of the line.
+	 * @param upgrade whether the writing cache holds the line shared, rather than missing
+	 */
+	void write(DataCache requester, int address, boolean upgrade) {
+		if (upgrade)
+			upgrades++;
+		else
+			writes++;
+		
+		for (DataCache cache : caches)
+			if (cache != requester && cache.isFound(address)) {
+				if (cache.snoop(address, true))
+					flushes++;
+				invalidations++;
+			}
+	}
+	
+	/**
+	 * Returns the transactions put on the bus: read misses, write misses and upgrades.
+	 */
+	public long getTransactions() {
+		return reads + writes + upgrades;
+	}
+	
+	public long getReads() {
+		return reads;
+	}
+	
+	public long getWrites() {
+		return writes;
+	}
+	
+	public long getUpgrades() {
+		return upgrades;
+	}
+	
+	/**
+	 * Returns how many modified lines were written back because another cache wanted them.
+	 */
+	public long getFlushes() {
+		return flushes;
+	}
+	
+	public long getInvalidations() {
+		return invalidations;
+	}
+	
+	public String displayStatistics() {
+		return String.format("Bus       : %d Transactions (%d Reads, %d Writes, %d Upgrades)\nCoherence : %d Flushes, %d Invalidations",
+				getTransactions(), reads, writes, upgrades, flushes, invalidations);
+	}
+	
+	public void clear() {
+		reads = 0;
+		writes = 0;
+		upgrades = 0;
+		flushes = 0;
+		invalidations = 0;
+	}
+	
+}
@@ -16,12 +16,23 @@ public class DataCache implements Addressable {
 	private final int associativity;
 	private WritePolicy onHit;
 	private WritePolicy onMiss;
-	private int accesses;
+	private long accesses;
 	private int accessTime;
-	private int hits;
+	private long hits;
 	private TreeMap<Integer, DataCacheEntry> cache;
 	private Addressable nextLevel;
 	
+	// The bus keeping this cache coherent with the other cores' ones, if any, and how many
+	// of its lines their writes invalidated
+	private CoherenceBus bus;
+	private long invalidations;
+	
+	// The program accessing the cache, and how many lines were evicted, in all and by
+	// another program than the one that brought them in
+	private int owner;
+	private long evictions;
+	private long foreignEvictions;
+	
 	public DataCache(int lineSize, int numberOfLines, int associativity, int accessTime) {
 		if (lineSize < 2)
 			throw new IllegalArgumentException("Cache line size must be greater than 1B");
@@ -73,14 +84,22 @@ public class DataCache implements Addressable {
 	public void setData(int address, byte[] data) {
 		accesses++;
 		if (!isFound(address)){
-			writeToMemory(address, data);
+			// A modified copy in another cache is more recent than any below, and is written
+			// back after them
 			removeLine(address);
+			if (bus != null)
+				bus.write(this, address - address % lineSize, false);
+			writeToMemory(address, data);
 			if (onMiss == WritePolicy.WRITE_ALLOCATE)
 				fetchLine(address);
 			return;
 		}
 		int offset = address % lineSize;
 		DataCacheEntry entry = fetchLine(address);
+		if (entry.isShared()) {
+			bus.write(this, address - offset, true);
+			entry.setShared(false);
+		}
 		byte[] lineData = entry.getData();
 		for (int i = 0; i < data.length; i++)
 			lineData[offset + i] = data[i];
@@ -91,7 +110,7 @@ public class DataCache implements Addressable {
 			nextLevel.setData(address, data);
 	}
 		
-	private boolean isFound(int address) {
+	boolean isFound(int address) {
 		int tag = address / (lineSize * (numberOfLines / associativity));
 		int set = (address / lineSize) % (numberOfLines / associativity);
 		DataCacheEntry entry;
@@ -103,19 +122,26 @@ public class DataCache implements Addressable {
 		return false;
 	}
 	
+	/**
+	 * Drops a line from this level and every one below, writing back the dirty copies
+	 * straight to memory, from the lowest level up since the copies above are more recent.
+	 */
 	private void removeLine(int address) {
+		if (nextLevel instanceof DataCache)
+			((DataCache) nextLevel).removeLine(address);
+		
 		int tag = address / (lineSize * (numberOfLines / associativity));
 		int set = (address / lineSize) % (numberOfLines / associativity);
 		DataCacheEntry entry = null;
 		for (int i = 0; i < associativity; i++) {
 			entry = cache.get(set * associativity + i);
 			if (entry != null && entry.getTag() == tag) {
-				cache.put(set * associativity + i, null);
+				if (entry.isDirty())
+					writeToMemory(entry.getDataAddress(), entry.getData());
+				cache.remove(set * associativity + i);
 				break;
 			}
 		}
-		if (nextLevel instanceof DataCache)
-			((DataCache) nextLevel).removeLine(address);
 	}
 	
 	private DataCacheEntry fetchLine(int address) {
@@ -123,7 +149,8 @@ public class DataCache implements Addressable {
 		int set = (address / lineSize) % (numberOfLines / associativity);
 		int offset = address % lineSize;
 		
-		int index = 0, oldest = 0;
+		int index = 0;
+		long oldest = 0;
 		DataCacheEntry entry = null;
 		for (int i = 0; i < associativity; i++) {
 			entry = cache.get(set * associativity + i);
@@ -142,14 +169,58 @@ public class DataCache implements Addressable {
 		}
 		
 		entry = cache.get(set * associativity + index);
+		if (entry != null) {
+			evictions++;
+			if (entry.getOwner() != owner)
+				foreignEvictions++;
+		}
 		if (onHit == WritePolicy.WRITE_BACK && entry != null && entry.isDirty())
 			nextLevel.setData(entry.getDataAddress(), entry.getData());
 		
+		boolean shared = bus != null && bus.read(this, address - offset);
 		byte[] data = nextLevel.getData(address - offset, lineSize);
 		entry = new DataCacheEntry(tag, data, address - offset, accesses);
+		entry.setShared(shared);
+		entry.setOwner(owner);
 		cache.put(set * associativity + index, entry);
 		return entry;
 	}
+	
+	/**
+	 * Answers another cache on the bus missing on or writing to a line this one holds,
+	 * writing the line back first if modified. A line that stays shared is written back to
+	 * the next level, which serves the miss, and an invalidated one straight to memory,
+	 * since the write invalidating it drops the line from every level below.
+	 * @return whether the line was modified
+	 */
+	boolean snoop(int address, boolean invalidate) {
+		int tag = address / (lineSize * (numberOfLines / associativity));
+		int set = (address / lineSize) % (numberOfLines / associativity);
+		for (int i = 0; i < associativity; i++) {
+			DataCacheEntry entry = cache.get(set * associativity + i);
+			if (entry == null || entry.getTag() != tag)
+				continue;
+			
+			boolean modified = entry.isDirty();
+			if (invalidate) {
+				if (modified)
+					writeToMemory(entry.getDataAddress(), entry.getData());
+				cache.remove(set * associativity + i);
+				invalidations++;
+			} else {
+				if (modified)
+					nextLevel.setData(entry.getDataAddress(), entry.getData());
+				entry.setClean();
+				entry.setShared(true);
+			}
+			return modified;
+		}
+		return false;
+	}
+	
+	void setCoherenceBus(CoherenceBus bus) {
+		this.bus = bus;
+	}
 		
 	private void writeToMemory(int address, byte[] data) {
 		if (nextLevel instanceof DataCache)
@@ -194,11 +265,11 @@ public class DataCache implements Addressable {
 		return array + "]";
 	}
 		
-	public int getHits() {
+	public long getHits() {
 		return hits;
 	}
 	
-	public int getAccesses() {
+	public long getAccesses() {
 		return accesses;
 	}
 	
@@ -206,9 +277,37 @@ public class DataCache implements Addressable {
 		return accessTime;
 	}
 	
+	/**
+	 * Returns how many of this cache's lines other caches on its coherence bus invalidated.
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+	
+	/**
+	 * Sets the program whose accesses follow, which owns the lines they bring in.
+	 */
+	public void setOwner(int owner) {
+		this.owner = owner;
+	}
+	
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Returns how many lines one program's accesses evicted that another brought in.
+	 */
+	public long getForeignEvictions() {
+		return foreignEvictions;
+	}
+	
 	public void clear() {
 		accesses = 0;
 		hits = 0;
+		invalidations = 0;
+		evictions = 0;
+		foreignEvictions = 0;
 		cache = new TreeMap<Integer, DataCacheEntry>();
 	}
 	
@@ -4,7 +4,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import engine.Helpers;
-import engine.types.Instruction;
+import engine.InstructionEncoding;
 import engine.types.InstructionCacheEntry;
 
 public class InstructionCache {
@@ -12,9 +12,10 @@ public class InstructionCache {
 	private final int lineSize;
 	private final int numberOfLines;
 	private final int associativity;
-	private int accesses;
+	private long accesses;
 	private int accessTime;
-	private int hits;
+	private long hits;
+	private int version;
 	private TreeMap<Integer, InstructionCacheEntry> cache;
 	private Memory memory;
 	
@@ -49,7 +50,14 @@ public class InstructionCache {
 		int set = (address / lineSize) % (numberOfLines / associativity);
 		int offset = address % lineSize;
 		
-		int index = 0, oldest = 0;
+		// The memory may be shared with other cores' caches
+		int version;
+		synchronized (memory) {
+			version = memory.getCodeVersion(address - offset, lineSize);
+		}
+		
+		int index = 0;
+		long oldest = 0;
 		InstructionCacheEntry entry = null;
 		for (int i = 0; i < associativity; i++) {
 			entry = cache.get(set * associativity + i);
@@ -57,6 +65,11 @@ public class InstructionCache {
 				index = i;
 				break;
 			} else if (entry.getTag() == tag) {
+				// A line whose code was written over since is fetched again in its place
+				if (entry.getVersion() != version) {
+					index = i;
+					break;
+				}
 				hits++;
 				return entry;
 			}
@@ -66,15 +79,33 @@ public class InstructionCache {
 			}
 		}
 		
-		Instruction[] instructions = memory.getInstructions(address - offset, lineSize / 2);
-		entry = new InstructionCacheEntry(tag, instructions, accesses);
+		short[] words;
+		synchronized (memory) {
+			words = memory.getInstructionWords(address - offset, lineSize / 2);
+			version = memory.getCodeVersion(address - offset, lineSize);
+		}
+		entry = new InstructionCacheEntry(tag, words, version, accesses);
 		cache.put(set * associativity + index, entry);
 		return entry;
 	}
 	
-	public Instruction getInstruction(int address) {
+	/**
+	 * Fetches the encoded instruction at an address.
+	 */
+	public short getWord(int address) {
 		int offset = address % lineSize;
-		return fetchLine(address).getInstructions()[offset / 2];
+		InstructionCacheEntry entry = fetchLine(address);
+		version = entry.getVersion();
+		return entry.getWords()[offset / 2];
+	}
+	
+	/**
+	 * Returns the version of the code the last word fetched was read at, which is that
+	 * of the pages holding its line. Other cores sharing the memory may have written
+	 * over the word since, so the version only goes with the word fetched.
+	 */
+	public int getVersion() {
+		return version;
 	}
 	
 	public Object[] displayData() {
@@ -84,7 +115,9 @@ public class InstructionCache {
 		for (Map.Entry<Integer, InstructionCacheEntry> entry : cache.entrySet()) {
 			data[i][0] = entry.getKey().toString();
 			data[i][1] = entry.getValue().getTag() + "";
-			data[i][2] = instructionsToString(entry.getValue().getInstructions());
+			int set = entry.getKey() / associativity;
+			int address = (entry.getValue().getTag() * (numberOfLines / associativity) + set) * lineSize;
+			data[i][2] = instructionsToString(address, entry.getValue().getWords());
 			i++;
 		}
 		double hitRatio = (accesses == 0)? 0 : (hits * 100.0) / accesses;
@@ -92,19 +125,19 @@ public class InstructionCache {
 		return new Object[]{data, headers, data2};
 	}
 	
-	private static String instructionsToString(Instruction[] instructions) {
+	private String instructionsToString(int address, short[] words) {
 		String array = "";
-		for (int i = 0; i < instructions.length; i++) {
-			array += "[" + ((instructions[i] == null)? "-" : instructions[i].format(1, 1)) + "]";
+		for (int i = 0; i < words.length; i++) {
+			array += "[" + ((!memory.isInstruction(address + 2 * i))? "-" : InstructionEncoding.format(words[i], 1, 1)) + "]";
 		}
 		return array;
 	}
 	
-	public int getHits() {
+	public long getHits() {
 		return hits;
 	}
 	
-	public int getAccesses() {
+	public long getAccesses() {
 		return accesses;
 	}
 	
@@ -1,26 +1,44 @@
 package engine.storage;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.HashSet;
 
 import engine.Helpers;
 import engine.types.Addressable;
-import engine.types.Instruction;
 
 public class Memory implements Addressable {
 	
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	
 	private final int size;
-	private int instructionAccesses;
-	private int dataAccesses;
+	private long instructionAccesses;
+	private long dataAccesses;
 	private int accessTime;
-	private TreeMap<Integer, Byte> memory;
-	private ArrayList<Instruction> instructions;
-	private HashSet<Integer> changedAddresses;
-	private HashSet<Integer> explicitlySetAddresses;
+	
+	// Bytes are kept in pages allocated on their first write, so that memory never written
+	// takes no space
+	private byte[][] pages;
+	
+	// Changes are told apart by the step they were made in, which clearing them ends: the
+	// step each page was last written in and each of its words last changed in, so that
+	// clearing takes no time. The words set by a program are kept as a bit each, since
+	// they are listed even when 0.
+	private int step;
+	private int[] pageSteps;
+	private int[][] changeSteps;
+	private long[][] explicitWords;
+	
+	// Instructions are encoded words among the data, marked by a bit each in a bitmap per
+	// page, allocated with its first instruction. Writing over one moves the version of its
+	// page on, which tells the caches and decoders holding the page's code to drop it, so
+	// that a write to a page without code costs a single check.
+	private long[][] codeWords;
+	private int[] codeVersions;
+	private int lastInstructionAddress;
 	
 	public Memory(int size, int accessTime) {
 		if (size < 128 || size > 4194304)
@@ -30,46 +48,122 @@ public class Memory implements Addressable {
 			throw new IllegalArgumentException("Memory size (" + size + ") must be a power of 2");
 		this.size = size;
 		this.accessTime = accessTime;
-		this.changedAddresses = new HashSet<>();
-		this.explicitlySetAddresses = new HashSet<>(); 
 		
 		clear();
 	}
 
-	public void addInstruction(String operation, Object[] operands) {
-		int address = instructions.size() * 2;
+	/**
+	 * Places an encoded instruction at an address, as code rather than data.
+	 */
+	public void setInstruction(int address, short word) {
 		if (address >= size)
 			throw new IllegalArgumentException("Program too large for memory");
-		instructions.add(new Instruction(address, operation, operands));
+		
+		if (address % 2 != 0 || address < 0)
+			throw new IllegalArgumentException("Invalid instruction address (" + address + ")");
+		
+		byte[] page = getPage(address);
+		page[address & (PAGE_SIZE - 1)] = (byte) (word >> 8);
+		page[(address & (PAGE_SIZE - 1)) + 1] = (byte) word;
+		markInstruction(address);
+		codeVersions[address >> PAGE_BITS]++;
+		lastInstructionAddress = Math.max(lastInstructionAddress, address);
 	}
 	
-	public Instruction[] getInstructions(int address, int number) {
-		if (address % 2 != 0 || address < 0 || address + number * 2 >= size) 
+	/**
+	 * Marks the word at an address as code, so that writing over it moves the version of
+	 * its page on. Words are marked when decoded, since a program may execute its data.
+	 */
+	public void markInstruction(int address) {
+		if (address < 0 || address >= size)
+			throw new IllegalArgumentException("Invalid instruction address (" + address + ")");
+		
+		int number = address >> PAGE_BITS;
+		int index = (address & (PAGE_SIZE - 1)) >> 1;
+		if (codeWords[number] == null)
+			codeWords[number] = new long[(getPageSize() / 2 + 63) / 64];
+		codeWords[number][index >> 6] |= 1L << index;
+	}
+	
+	/**
+	 * Returns the words from an address on, as fetched for instructions.
+	 */
+	public short[] getInstructionWords(int address, int number) {
+		if (address % 2 != 0 || address < 0 || address + number * 2 > size) 
 			throw new IllegalArgumentException("Invalid instruction address (" + address + ")");
 		
 		instructionAccesses++;
-		Instruction[] ins = new Instruction[number];
-		int index;
-		for (int i = 0; i < number; i++) {
-			index = address / 2 + i;
-			ins[i] = (index < 0 || index >= instructions.size())? null : instructions.get(index);
-		}
-		return ins;
+		short[] words = new short[number];
+		for (int i = 0; i < number; i++)
+			words[i] = (short) (getByte(address + 2 * i) << 8 | getByte(address + 2 * i + 1) & 0xFF);
+		return words;
+	}
+	
+	/**
+	 * Returns whether the word at an address was placed as an instruction.
+	 */
+	public boolean isInstruction(int address) {
+		if (address < 0 || address >= size)
+			return false;
+		
+		long[] code = codeWords[address >> PAGE_BITS];
+		int index = (address & (PAGE_SIZE - 1)) >> 1;
+		return code != null && (code[index >> 6] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Returns the version of the code in the pages holding the given bytes, which moves on
+	 * whenever an instruction in them is placed or written over.
+	 */
+	public int getCodeVersion(int address, int length) {
+		int version = 0;
+		for (int page = address >> PAGE_BITS; page <= (address + length - 1) >> PAGE_BITS; page++)
+			version += codeVersions[page];
+		return version;
 	}
 	
 	public void setByte(int address, byte data) {
 		if (address < 0 || address >= size)
 			throw new IllegalArgumentException("Invalid address (" + address + ")");
-			
-		memory.put(address, data);
+		
+		getPage(address)[address & (PAGE_SIZE - 1)] = data;
+		pageSteps[address >> PAGE_BITS] = step;
+		if (isInstruction(address & ~1))
+			codeVersions[address >> PAGE_BITS]++;
+	}
+	
+	/**
+	 * Returns the page holding an address, allocating it with its change tracking if it
+	 * was never written.
+	 */
+	private byte[] getPage(int address) {
+		int page = address >> PAGE_BITS;
+		if (pages[page] == null) {
+			int bytes = Math.min(size, PAGE_SIZE);
+			pages[page] = new byte[bytes];
+			changeSteps[page] = new int[bytes / 2];
+			explicitWords[page] = new long[(bytes / 2 + 63) / 64];
+		}
+		return pages[page];
+	}
+	
+	/**
+	 * Marks the word at an address both changed in this step and set, so that it is listed.
+	 */
+	private void markSet(int address) {
+		int page = address >> PAGE_BITS;
+		int word = (address & (PAGE_SIZE - 1)) >> 1;
+		changeSteps[page][word] = step;
+		explicitWords[page][word >> 6] |= 1L << word;
+		pageSteps[page] = step;
 	}
 	
 	public byte getByte(int address) {
 		if (address < 0 || address >= size)
 			throw new IllegalArgumentException("Invalid address (" + address + ")");
 		
-		Byte data = memory.get(address);
-		return (data == null) ? 0 : data;
+		byte[] page = pages[address >> PAGE_BITS];
+		return (page == null)? 0 : page[address & (PAGE_SIZE - 1)];
 	}
 	
 	public void setWord(int address, short data) {
@@ -79,9 +173,7 @@ public class Memory implements Addressable {
 		byte[] bytes = Helpers.toBytes(data);
 		setByte(address, bytes[0]);
 		setByte(address + 1, bytes[1]);
-
-		changedAddresses.add(address);
-		explicitlySetAddresses.add(address);
+		markSet(address);
 	}
 	
 	public short getWord(int address) {
@@ -106,9 +198,47 @@ public class Memory implements Addressable {
 			setByte(address + i, data[i]);
 		
         if (address % 2 == 0 && data.length >= 2)
-        {
-            explicitlySetAddresses.add(address);
-            changedAddresses.add(address);
+            markSet(address);
+	}
+	
+	/**
+	 * Copies bytes from a buffer into memory from the given address on, a page at a time,
+	 * without counting them as data accesses. The words copied count as changed.
+	 * @param source the buffer, read from its position on
+	 */
+	public void load(int address, ByteBuffer source, int length) {
+		if (address < 0 || length < 0 || address + (long) length > size)
+			throw new IllegalArgumentException("Invalid address range (" + address + " to " + (address + (long) length - 1) + ")");
+		
+		while (length > 0) {
+			int offset = address & (PAGE_SIZE - 1);
+			int bytes = Math.min(length, getPageSize() - offset);
+			source.get(getPage(address), offset, bytes);
+			Arrays.fill(changeSteps[address >> PAGE_BITS], offset >> 1, (offset + bytes + 1) >> 1, step);
+			pageSteps[address >> PAGE_BITS] = step;
+			if (codeWords[address >> PAGE_BITS] != null)
+				codeVersions[address >> PAGE_BITS]++;
+			address += bytes;
+			length -= bytes;
+		}
+	}
+	
+	/**
+	 * Copies bytes from memory from the given address on into a buffer, a page at a time,
+	 * without counting them as data accesses. Pages never written are copied as zeros.
+	 * @param target the buffer, written from its position on
+	 */
+	public void dump(int address, ByteBuffer target, int length) {
+		if (address < 0 || length < 0 || address + (long) length > size)
+			throw new IllegalArgumentException("Invalid address range (" + address + " to " + (address + (long) length - 1) + ")");
+		
+		while (length > 0) {
+			int offset = address & (PAGE_SIZE - 1);
+			int bytes = Math.min(length, getPageSize() - offset);
+			byte[] page = pages[address >> PAGE_BITS];
+			target.put((page == null)? new byte[bytes] : page, (page == null)? 0 : offset, bytes);
+			address += bytes;
+			length -= bytes;
 		}
 	}
 	
@@ -116,35 +246,26 @@ public class Memory implements Addressable {
 		int bits = (int)(Math.ceil(Helpers.log(size, (hex)? 16 : 10)));
 		String[] headers = {"Address", "Word"}; 
 		
-    	ArrayList<Integer> validAddresses = new ArrayList<>();
-    
-        for (int address : explicitlySetAddresses)
-        {
-            if (address % 2 == 0)
-            {
-                validAddresses.add(address);
-            }
-        }
-        
-        // Also show any non-zero addresses not already in the list
-        for (int address : memory.keySet())
+        // The words set explicitly, and any other non-zero ones but instructions, in address order
+        ArrayList<Integer> validAddresses = new ArrayList<>();
+        for (int page = 0; page < pages.length; page++)
         {
-            if (address % 2 == 0 && !explicitlySetAddresses.contains(address))
+            if (pages[page] == null)
+                continue;
+            
+            for (int word = 0; word < pages[page].length / 2; word++)
             {
-                short value = getWord(address);
-                if (value != 0)
+                int address = (page << PAGE_BITS) + word * 2;
+                if ((explicitWords[page][word >> 6] & (1L << word)) != 0 || (getWord(address) != 0 && !isInstruction(address)))
                 {
                     validAddresses.add(address);
                 }
             }
         }
-        
-        // Remove duplicates and sort
-        TreeSet<Integer> sortedAddresses = new TreeSet<>(validAddresses);
 
-		String[][] data = new String[sortedAddresses.size()][2];
+		String[][] data = new String[validAddresses.size()][2];
 		int i = 0;
-		for (int address : sortedAddresses)
+		for (int address : validAddresses)
 		{
 			data[i][0] = String.format((hex)? "0x%0" + bits + "X" : "%d", address);
 			data[i][1] = String.format((hex)? "0x%04X" : "%d", getWord(address));
@@ -157,13 +278,22 @@ public class Memory implements Addressable {
 	public void clear() {
 		instructionAccesses = 0;
 		dataAccesses = 0;
-		memory = new TreeMap<>();
-		instructions = new ArrayList<>();
-		changedAddresses = new HashSet<>();
-		explicitlySetAddresses = new HashSet<>();
+		pages = new byte[(size + PAGE_SIZE - 1) >> PAGE_BITS][];
+		changeSteps = new int[pages.length][];
+		explicitWords = new long[pages.length][];
+		pageSteps = new int[pages.length];
+		step = 1;
+		codeWords = new long[pages.length][];
+		lastInstructionAddress = -2;
+		
+		// Versions only move on, so that nothing decoded before clearing is taken for current
+		if (codeVersions == null)
+			codeVersions = new int[pages.length];
+		for (int i = 0; i < codeVersions.length; i++)
+			codeVersions[i]++;
 	}
 	
-	public int getDataAccesses() {
+	public long getDataAccesses() {
 		return dataAccesses;
 	}
 	
@@ -171,30 +301,66 @@ public class Memory implements Addressable {
 		return accessTime;
 	}
 	
-	public ArrayList<Instruction> getInstructions() {
-		 return instructions;
-	 }
-	
 	public int getSize() {
 		return size;
 	}
 
 	public int getLastInstructionAddress() {
-		return instructions.size() * 2 - 2;
+		return lastInstructionAddress;
 	}
 
+	/**
+	 * Marks the word at an address changed in this step, unless its page was never written,
+	 * which stays unallocated.
+	 */
 	public void markChanged(int address)
 	{
-		changedAddresses.add(address);
+		// Addresses outside memory and words never written have nothing to mark
+		if (address < 0 || address >= size || pages[address >> PAGE_BITS] == null)
+			return;
+		
+		changeSteps[address >> PAGE_BITS][(address & (PAGE_SIZE - 1)) >> 1] = step;
+		pageSteps[address >> PAGE_BITS] = step;
 	}
 
 	public boolean hasChanged(int address)
     {
-        return changedAddresses.contains(address);
+        if (address < 0 || address >= size || pageSteps[address >> PAGE_BITS] != step)
+            return false;
+        return changeSteps[address >> PAGE_BITS][(address & (PAGE_SIZE - 1)) >> 1] == step;
     }
 
+	/**
+	 * Ends the step the changes were made in, so that none of them counts as changed.
+	 */
 	public void clearChanges()
     {
-        changedAddresses.clear();
+        step++;
     }
+	
+	/**
+	 * Returns the bytes in a page of memory, which the pages are numbered by.
+	 */
+	public int getPageSize()
+	{
+		return Math.min(size, PAGE_SIZE);
+	}
+	
+	/**
+	 * Returns whether the page with the given number was written since the changes were
+	 * last cleared.
+	 */
+	public boolean isPageDirty(int page)
+	{
+		return pageSteps[page] == step;
+	}
+	
+	/**
+	 * Returns whether the page with the given number was ever written, since pages never
+	 * written hold only zeros.
+	 */
+	public boolean isPageAllocated(int page)
+	{
+		return pages[page] != null;
+	}
 }
@@ -0,0 +1,290 @@
+package engine.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import engine.types.ImageFormat;
+
+/**
+ * Loads images of the memory's bytes into it and dumps it into them, through files mapped
+ * into memory, so that images of megabytes are copied a page at a time rather than a word
+ * at a time. Loading goes straight to memory, behind the caches, so it belongs between
+ * assembling a program and running it. Images hold the instructions too, since they are
+ * encoded among the data: dumps include the program, and loading over its code moves the
+ * code versions on, so that the program runs what was loaded.
+ */
+public final class MemoryImage {
+	
+	private static final int HEX_ROW = 16;
+	private static final int ELF_HEADER = 52;
+	private static final int ELF_SEGMENT = 32;
+	
+	private MemoryImage() {
+		throw new IllegalStateException("Utility class");
+	}
+	
+	/**
+	 * Loads an image into memory, leaving the bytes it does not give as they were.
+	 * @param offset the address the image's address 0 is loaded to
+	 */
+	public static void load(Memory memory, Path path, ImageFormat format, int offset) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Memory image too large (" + channel.size() + " bytes)");
+			
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			switch (format) {
+				case RAW:
+					memory.load(offset, buffer, buffer.remaining());
+					break;
+				case INTEL_HEX:
+					loadHex(memory, buffer, offset);
+					break;
+				case ELF:
+					loadElf(memory, buffer, offset);
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * Dumps the whole memory into an image, replacing the file. Intel HEX and ELF images
+	 * leave out the bytes never written, and Intel HEX ones also the rows of zeros, so
+	 * they restore the memory as it was when loaded into cleared memory.
+	 */
+	public static void dump(Memory memory, Path path, ImageFormat format) throws IOException {
+		byte[] contents = null;
+		int length = memory.getSize();
+		if (format == ImageFormat.INTEL_HEX) {
+			contents = dumpHex(memory).getBytes(StandardCharsets.US_ASCII);
+			length = contents.length;
+		} else if (format == ImageFormat.ELF)
+			length = getElfLength(memory);
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+			if (format == ImageFormat.RAW)
+				memory.dump(0, buffer, length);
+			else if (format == ImageFormat.INTEL_HEX)
+				buffer.put(contents);
+			else
+				dumpElf(memory, buffer);
+			buffer.force();
+		}
+	}
+	
+	/**
+	 * Loads the data records of an Intel HEX image, with the upper address bits given by
+	 * extended segment and linear address records, up to the end of file record.
+	 */
+	private static void loadHex(Memory memory, ByteBuffer buffer, int offset) {
+		int upper = 0;
+		int line = 0;
+		StringBuilder text = new StringBuilder();
+		while (buffer.hasRemaining()) {
+			text.setLength(0);
+			char c;
+			while (buffer.hasRemaining() && (c = (char) buffer.get()) != '\n')
+				text.append(c);
+			line++;
+			String record = text.toString().trim();
+			if (record.isEmpty())
+				continue;
+			
+			byte[] bytes = parseHexRecord(record, line);
+			int address = ((bytes[1] & 0xFF) << 8) | (bytes[2] & 0xFF);
+			int length = bytes[0] & 0xFF;
+			int value = (length >= 2)? ((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF) : 0;
+			switch (bytes[3]) {
+				case 0:
+					if (offset + upper + address + length > memory.getSize())
+						throw new IllegalArgumentException("Line " + line + ": Address (" + (offset + upper + address) + ") out of memory");
+					memory.load(offset + upper + address, ByteBuffer.wrap(bytes, 4, length), length);
+					break;
+				case 1:
+					return;
+				case 2:
+					upper = value << 4;
+					break;
+				case 4:
+					upper = value << 16;
+					break;
+				case 3:
+				case 5:
+					// Start addresses mean nothing to the memory
+					break;
+				default:
+					throw new IllegalArgumentException("Line " + line + ": Unknown Intel HEX record type (" + bytes[3] + ")");
+			}
+		}
+	}
+	
+	/**
+	 * Decodes an Intel HEX record into its bytes: the data length, the address, the type,
+	 * the data and the checksum.
+	 */
+	private static byte[] parseHexRecord(String record, int line) {
+		if (record.charAt(0) != ':' || record.length() % 2 == 0 || record.length() < 11)
+			throw new IllegalArgumentException("Line " + line + ": Invalid Intel HEX record");
+		
+		byte[] bytes = new byte[(record.length() - 1) / 2];
+		int sum = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(record.charAt(1 + 2 * i), 16);
+			int low = Character.digit(record.charAt(2 + 2 * i), 16);
+			if (high == -1 || low == -1)
+				throw new IllegalArgumentException("Line " + line + ": Invalid Intel HEX record");
+			bytes[i] = (byte) (high << 4 | low);
+			sum += bytes[i];
+		}
+		
+		if ((bytes[0] & 0xFF) != bytes.length - 5)
+			throw new IllegalArgumentException("Line " + line + ": Intel HEX record length does not match its data");
+		
+		if ((sum & 0xFF) != 0)
+			throw new IllegalArgumentException("Line " + line + ": Intel HEX record checksum does not match");
+		return bytes;
+	}
+	
+	/**
+	 * Writes a data record for every row of the pages written that is not all zeros, with
+	 * an extended linear address record wherever the upper address bits change.
+	 */
+	private static String dumpHex(Memory memory) {
+		StringBuilder text = new StringBuilder();
+		byte[] row = new byte[HEX_ROW];
+		int upper = 0;
+		for (int page = 0; page < memory.getSize() / memory.getPageSize(); page++) {
+			if (!memory.isPageAllocated(page))
+				continue;
+			
+			for (int address = page * memory.getPageSize(); address < (page + 1) * memory.getPageSize(); address += HEX_ROW) {
+				memory.dump(address, ByteBuffer.wrap(row), HEX_ROW);
+				boolean zeros = true;
+				for (byte b : row)
+					zeros &= b == 0;
+				if (zeros)
+					continue;
+				
+				if (address >> 16 != upper) {
+					upper = address >> 16;
+					appendHexRecord(text, 0, 4, new byte[]{(byte) (upper >> 8), (byte) upper});
+				}
+				appendHexRecord(text, address & 0xFFFF, 0, row);
+			}
+		}
+		appendHexRecord(text, 0, 1, new byte[0]);
+		return text.toString();
+	}
+	
+	private static void appendHexRecord(StringBuilder text, int address, int type, byte[] data) {
+		int sum = data.length + (address >> 8) + address + type;
+		text.append(String.format(":%02X%04X%02X", data.length, address, type));
+		for (byte b : data) {
+			text.append(String.format("%02X", b));
+			sum += b;
+		}
+		text.append(String.format("%02X\n", -sum & 0xFF));
+	}
+	
+	/**
+	 * Loads the loadable segments of a 32-bit ELF image of either byte order, zeroing the
+	 * part of each beyond the bytes the file holds.
+	 */
+	private static void loadElf(Memory memory, ByteBuffer buffer, int offset) {
+		if (buffer.remaining() < ELF_HEADER || buffer.getInt(0) != 0x7F454C46)
+			throw new IllegalArgumentException("Not an ELF image");
+		
+		if (buffer.get(4) != 1)
+			throw new IllegalArgumentException("Only 32-bit ELF images can be loaded");
+		
+		buffer.order((buffer.get(5) == 1)? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		int segmentsOffset = buffer.getInt(28);
+		int segmentSize = buffer.getShort(42) & 0xFFFF;
+		int segments = buffer.getShort(44) & 0xFFFF;
+		if (segmentsOffset < 0 || segmentsOffset + (long) segments * segmentSize > buffer.limit())
+			throw new IllegalArgumentException("ELF image truncated");
+		
+		for (int i = 0; i < segments; i++) {
+			int segment = segmentsOffset + i * segmentSize;
+			if (buffer.getInt(segment) != 1)
+				continue;
+			
+			int fileOffset = buffer.getInt(segment + 4);
+			int address = offset + buffer.getInt(segment + 8);
+			int fileSize = buffer.getInt(segment + 16);
+			int memorySize = buffer.getInt(segment + 20);
+			if (fileOffset < 0 || fileSize < 0 || fileOffset + (long) fileSize > buffer.limit())
+				throw new IllegalArgumentException("ELF image truncated");
+			
+			if (memorySize < fileSize || address < 0 || address + (long) memorySize > memory.getSize())
+				throw new IllegalArgumentException("ELF segment " + i + " does not fit in memory");
+			
+			ByteBuffer data = buffer.duplicate();
+			data.position(fileOffset);
+			memory.load(address, data, fileSize);
+			memory.load(address + fileSize, ByteBuffer.allocate(memorySize - fileSize), memorySize - fileSize);
+		}
+	}
+	
+	/**
+	 * Returns the length of the ELF image of the memory: the header, a program header per
+	 * run of pages written and the bytes of those pages.
+	 */
+	private static int getElfLength(Memory memory) {
+		int length = ELF_HEADER;
+		int pages = memory.getSize() / memory.getPageSize();
+		for (int page = 0; page < pages; page++)
+			if (memory.isPageAllocated(page)) {
+				length += memory.getPageSize();
+				if (page == 0 || !memory.isPageAllocated(page - 1))
+					length += ELF_SEGMENT;
+			}
+		return length;
+	}
+	
+	/**
+	 * Writes a big-endian 32-bit ELF executable for no particular machine, with a loadable
+	 * segment per run of pages written, their bytes following the program headers.
+	 */
+	private static void dumpElf(Memory memory, ByteBuffer buffer) {
+		int pages = memory.getSize() / memory.getPageSize();
+		int segments = 0;
+		for (int page = 0; page < pages; page++)
+			if (memory.isPageAllocated(page) && (page == 0 || !memory.isPageAllocated(page - 1)))
+				segments++;
+		
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.putInt(0x7F454C46).put((byte) 1).put((byte) 2).put((byte) 1).put(new byte[9]);
+		buffer.putShort((short) 2).putShort((short) 0).putInt(1).putInt(0).putInt(ELF_HEADER).putInt(0).putInt(0);
+		buffer.putShort((short) ELF_HEADER).putShort((short) ELF_SEGMENT).putShort((short) segments);
+		buffer.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+		
+		int fileOffset = ELF_HEADER + segments * ELF_SEGMENT;
+		for (int page = 0; page < pages; page++) {
+			if (!memory.isPageAllocated(page) || (page > 0 && memory.isPageAllocated(page - 1)))
+				continue;
+			
+			int end = page;
+			while (end < pages && memory.isPageAllocated(end))
+				end++;
+			int address = page * memory.getPageSize();
+			int bytes = (end - page) * memory.getPageSize();
+			buffer.putInt(1).putInt(fileOffset).putInt(address).putInt(address);
+			buffer.putInt(bytes).putInt(bytes).putInt(6).putInt(1);
+			fileOffset += bytes;
+		}
+		
+		for (int page = 0; page < pages; page++)
+			if (memory.isPageAllocated(page))
+				memory.dump(page * memory.getPageSize(), buffer, memory.getPageSize());
+	}
+	
+}
@@ -0,0 +1,125 @@
+package engine.timing;
+
+/**
+ * An open addressing hash table from memory addresses to the last store to each of
+ * them in the store queue, holding its sequence number and the cycles its address and
+ * data become known and it commits. Entries are kept in primitive arrays, so that
+ * recording a store allocates nothing and looking one up takes constant time.
+ */
+public class AddressTable {
+	
+	public static final int SEQUENCE = 0;
+	public static final int ADDRESS_READY = 1;
+	public static final int DATA_READY = 2;
+	public static final int COMMITTED = 3;
+	
+	private int[] addresses;
+	private long[][] columns;
+	private boolean[] used;
+	private int size;
+	
+	public AddressTable() {
+		this(16);
+	}
+	
+	private AddressTable(int capacity) {
+		addresses = new int[capacity];
+		columns = new long[4][capacity];
+		used = new boolean[capacity];
+	}
+	
+	public void put(int address, long sequence, long addressReady, long dataReady, long committed) {
+		if ((size + 1) * 4 > addresses.length * 3)
+			resize(addresses.length * 2);
+		
+		int slot = slot(address);
+		if (!used[slot]) {
+			used[slot] = true;
+			addresses[slot] = address;
+			size++;
+		}
+		columns[SEQUENCE][slot] = sequence;
+		columns[ADDRESS_READY][slot] = addressReady;
+		columns[DATA_READY][slot] = dataReady;
+		columns[COMMITTED][slot] = committed;
+	}
+	
+	/**
+	 * @return the slot holding the last store to the address, or -1 if none
+	 */
+	public int find(int address) {
+		int slot = slot(address);
+		return used[slot]? slot : -1;
+	}
+	
+	/**
+	 * @param slot a slot returned by {@link #find(int)} since the last change
+	 * @param column one of SEQUENCE, ADDRESS_READY, DATA_READY or COMMITTED
+	 */
+	public long get(int slot, int column) {
+		return columns[column][slot];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Removes the stores that committed in or before the given cycle, which have left
+	 * the store queue for any load starting after it.
+	 */
+	public void prune(long cycle) {
+		AddressTable pruned = new AddressTable(addresses.length);
+		for (int i = 0; i < addresses.length; i++)
+			if (used[i] && columns[COMMITTED][i] > cycle)
+				pruned.put(addresses[i], columns[SEQUENCE][i], columns[ADDRESS_READY][i], columns[DATA_READY][i], columns[COMMITTED][i]);
+		
+		int capacity = addresses.length;
+		while (capacity > 16 && pruned.size * 8 < capacity)
+			capacity /= 2;
+		
+		if (capacity != addresses.length)
+			pruned.resize(capacity);
+		
+		addresses = pruned.addresses;
+		columns = pruned.columns;
+		used = pruned.used;
+		size = pruned.size;
+	}
+	
+	public AddressTable copy() {
+		AddressTable copy = new AddressTable(0);
+		copy.addresses = addresses.clone();
+		copy.columns = new long[columns.length][];
+		for (int i = 0; i < columns.length; i++)
+			copy.columns[i] = columns[i].clone();
+		copy.used = used.clone();
+		copy.size = size;
+		return copy;
+	}
+	
+	private int slot(int address) {
+		int mask = addresses.length - 1;
+		int hash = address * 0x9E3779B9;
+		int slot = (hash ^ hash >>> 16) & mask;
+		while (used[slot] && addresses[slot] != address)
+			slot = (slot + 1) & mask;
+		
+		return slot;
+	}
+	
+	private void resize(int capacity) {
+		int[] oldAddresses = addresses;
+		long[][] oldColumns = columns;
+		boolean[] oldUsed = used;
+		
+		addresses = new int[capacity];
+		columns = new long[4][capacity];
+		used = new boolean[capacity];
+		size = 0;
+		for (int i = 0; i < oldAddresses.length; i++)
+			if (oldUsed[i])
+				put(oldAddresses[i], oldColumns[SEQUENCE][i], oldColumns[ADDRESS_READY][i], oldColumns[DATA_READY][i], oldColumns[COMMITTED][i]);
+	}
+
+}
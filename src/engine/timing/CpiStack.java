@@ -0,0 +1,121 @@
+package engine.timing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import engine.types.StallType;
+
+/**
+ * Cycles of a run broken down by the reason they were spent, as a whole and for each
+ * instruction address so that they can be summed over a range of the program. Slots
+ * past the stall types hold the cycles spent in each memory level.
+ */
+public class CpiStack {
+	
+	private static final int TYPES = StallType.values().length;
+	
+	private long instructions;
+	private long[] cycles;
+	private HashMap<Integer, long[]> addresses;
+	
+	public CpiStack() {
+		cycles = new long[TYPES];
+		addresses = new HashMap<Integer, long[]>();
+	}
+	
+	/**
+	 * Counts an instruction at the given address, before adding its cycles.
+	 */
+	public void addInstruction(int address) {
+		instructions++;
+		getAddress(address, 0)[0]++;
+	}
+	
+	/**
+	 * @param slot the ordinal of a stall type, or the number of types plus a memory level
+	 */
+	public void add(int address, int slot, long cycles) {
+		if (cycles <= 0)
+			return;
+		
+		if (slot >= this.cycles.length)
+			this.cycles = Arrays.copyOf(this.cycles, slot + 1);
+		this.cycles[slot] += cycles;
+		getAddress(address, slot)[slot + 1] += cycles;
+	}
+	
+	public long getInstructions() {
+		return instructions;
+	}
+	
+	public long getCycles(StallType type) {
+		return cycles[type.ordinal()];
+	}
+	
+	public long getMemoryCycles(int level) {
+		return (TYPES + level < cycles.length)? cycles[TYPES + level] : 0;
+	}
+	
+	/**
+	 * Returns the number of memory levels any cycles were spent in.
+	 */
+	public int getLevels() {
+		return cycles.length - TYPES;
+	}
+	
+	/**
+	 * Returns the instructions executed and the cycles of each slot for the addresses
+	 * from one to another, inclusive, with the number of instructions first.
+	 */
+	public long[] getRange(int from, int to) {
+		long[] range = new long[cycles.length + 1];
+		for (Map.Entry<Integer, long[]> entry : addresses.entrySet()) {
+			if (entry.getKey() < from || entry.getKey() > to)
+				continue;
+			
+			long[] counts = entry.getValue();
+			for (int i = 0; i < counts.length; i++)
+				range[i] += counts[i];
+		}
+		return range;
+	}
+	
+	/**
+	 * Adds the instructions and cycles added between two copies of this stack the given
+	 * number of times.
+	 */
+	public void repeat(CpiStack start, CpiStack end, long times) {
+		instructions += times * (end.instructions - start.instructions);
+		if (end.cycles.length > cycles.length)
+			cycles = Arrays.copyOf(cycles, end.cycles.length);
+		for (int i = 0; i < end.cycles.length; i++)
+			cycles[i] += times * (end.cycles[i] - ((i < start.cycles.length)? start.cycles[i] : 0));
+		for (Map.Entry<Integer, long[]> entry : end.addresses.entrySet()) {
+			long[] after = entry.getValue();
+			long[] before = start.addresses.get(entry.getKey());
+			long[] counts = getAddress(entry.getKey(), after.length - 2);
+			for (int i = 0; i < after.length; i++)
+				counts[i] += times * (after[i] - ((before != null && i < before.length)? before[i] : 0));
+		}
+	}
+	
+	public CpiStack copy() {
+		CpiStack copy = new CpiStack();
+		copy.instructions = instructions;
+		copy.cycles = cycles.clone();
+		for (Map.Entry<Integer, long[]> entry : addresses.entrySet())
+			copy.addresses.put(entry.getKey(), entry.getValue().clone());
+		return copy;
+	}
+	
+	private long[] getAddress(int address, int slot) {
+		long[] counts = addresses.get(address);
+		if (counts == null)
+			addresses.put(address, counts = new long[TYPES + 1]);
+		else if (slot + 1 >= counts.length)
+			addresses.put(address, counts = Arrays.copyOf(counts, slot + 2));
+		return counts;
+	}
+
+}
@@ -0,0 +1,98 @@
+package engine.timing;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer values ordered by long keys, such as cycles or
+ * sequence numbers, kept in primitive arrays.
+ */
+public class CycleHeap {
+	
+	private long[] keys;
+	private int[] values;
+	private int size;
+	
+	public CycleHeap() {
+		keys = new long[16];
+		values = new int[16];
+	}
+	
+	public void add(long key, int value) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (keys[parent] <= key)
+				break;
+			
+			keys[i] = keys[parent];
+			values[i] = values[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		values[i] = value;
+	}
+	
+	public long peekKey() {
+		return keys[0];
+	}
+	
+	public int peekValue() {
+		return values[0];
+	}
+	
+	/**
+	 * Removes the entry with the smallest key.
+	 * @return its value
+	 */
+	public int poll() {
+		int value = values[0];
+		size--;
+		long key = keys[size];
+		int last = values[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			
+			if (keys[child] >= key)
+				break;
+			
+			keys[i] = keys[child];
+			values[i] = values[child];
+			i = child;
+		}
+		keys[i] = key;
+		values[i] = last;
+		return value;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	public CycleHeap copy() {
+		CycleHeap copy = new CycleHeap();
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.size = size;
+		return copy;
+	}
+
+}
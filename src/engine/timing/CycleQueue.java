@@ -0,0 +1,81 @@
+package engine.timing;
+
+/**
+ * A growable ring buffer of cycle numbers that are added in non-decreasing order.
+ * Used to track the commit cycles of the entries occupying the ROB or a group of
+ * reservation stations, retiring them as the issue cycle moves past them.
+ */
+public class CycleQueue {
+	
+	private long[] cycles;
+	private int head;
+	private int size;
+	
+	public CycleQueue(int capacity) {
+		cycles = new long[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+	}
+	
+	public void add(long cycle) {
+		if (size == cycles.length)
+			grow();
+		
+		cycles[(head + size) & (cycles.length - 1)] = cycle;
+		size++;
+	}
+	
+	/**
+	 * Removes every cycle that is less than or equal to the given one.
+	 */
+	public void removeUpTo(long cycle) {
+		while (size > 0 && cycles[head] <= cycle) {
+			head = (head + 1) & (cycles.length - 1);
+			size--;
+		}
+	}
+	
+	public long peek() {
+		return cycles[head];
+	}
+	
+	/**
+	 * Returns the cycle at the given position from the head.
+	 */
+	public long get(int index) {
+		return cycles[(head + index) & (cycles.length - 1)];
+	}
+	
+	/**
+	 * Moves every cycle in the queue by the given number of cycles.
+	 */
+	public void shift(long cycles) {
+		for (int i = 0; i < size; i++)
+			this.cycles[(head + i) & (this.cycles.length - 1)] += cycles;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+	
+	public CycleQueue copy() {
+		CycleQueue copy = new CycleQueue(cycles.length);
+		copy.cycles = cycles.clone();
+		copy.head = head;
+		copy.size = size;
+		return copy;
+	}
+	
+	private void grow() {
+		long[] grown = new long[cycles.length * 2];
+		for (int i = 0; i < size; i++)
+			grown[i] = cycles[(head + i) & (cycles.length - 1)];
+		
+		cycles = grown;
+		head = 0;
+	}
+
+}
@@ -0,0 +1,168 @@
+package engine.timing;
+
+/**
+ * A sliding set of occupied cycles, used to find the first cycle at or after a given
+ * one in which a slot is free, a slot being one of the common data buses or one of the
+ * units of a type. A bitset marks the cycles in which every slot is taken, with the
+ * number of claims per cycle kept alongside when there is more than one slot. Cycles
+ * below the horizon set by {@link #discardBefore(long)} are forgotten, so only the
+ * window between the current issue cycle and the latest claimed slot is kept in memory.
+ */
+public class CycleSlots {
+	
+	private int capacity;
+	private long[] words;
+	private int[] claims;
+	private long baseWord;
+	
+	public CycleSlots() {
+		this(1);
+	}
+	
+	/**
+	 * @param capacity the number of claims each cycle can take
+	 */
+	public CycleSlots(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid number of slots per cycle");
+		
+		this.capacity = capacity;
+		words = new long[16];
+		if (capacity > 1)
+			claims = new int[words.length << 6];
+	}
+	
+	/**
+	 * Claims the first free slot at or after the given cycle.
+	 * @return the claimed cycle
+	 */
+	public long claim(long cycle) {
+		if (cycle < baseWord << 6)
+			throw new IllegalArgumentException("Cycle " + cycle + " is behind the slots' horizon");
+		
+		long word = cycle >>> 6;
+		long free = ~bits(word) & (-1L << (cycle & 63));
+		while (free == 0) {
+			word++;
+			free = ~bits(word);
+		}
+		long slot = (word << 6) + Long.numberOfTrailingZeros(free);
+		while (word - baseWord >= words.length)
+			grow();
+		
+		if (claims == null || ++claims[claimIndex(slot)] == capacity)
+			words[index(word)] |= 1L << (slot & 63);
+		return slot;
+	}
+	
+	/**
+	 * Claims a slot in each of a number of consecutive cycles, starting from the first
+	 * cycle at or after the given one from which none of them is full.
+	 * @return the first claimed cycle
+	 */
+	public long claim(long cycle, int length) {
+		if (cycle < baseWord << 6)
+			throw new IllegalArgumentException("Cycle " + cycle + " is behind the slots' horizon");
+		
+		long start = cycle;
+		for (long i = cycle; i < start + length; i++)
+			if (((bits(i >>> 6) >>> (i & 63)) & 1) != 0)
+				start = i + 1;
+		
+		for (long i = start; i < start + length; i++)
+			claim(i);
+		return start;
+	}
+	
+	/**
+	 * Returns the number of slots claimed in the given cycle.
+	 */
+	public int getClaims(long cycle) {
+		if (cycle < baseWord << 6 || (cycle >>> 6) - baseWord >= words.length)
+			return 0;
+		
+		if (claims == null)
+			return (int) (words[index(cycle >>> 6)] >>> (cycle & 63)) & 1;
+		
+		return claims[claimIndex(cycle)];
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Forgets all slots before the given cycle.
+	 */
+	public void discardBefore(long cycle) {
+		long word = cycle >>> 6;
+		long last = Math.min(word, baseWord + words.length);
+		for (long i = baseWord; i < last; i++) {
+			words[index(i)] = 0;
+			if (claims != null)
+				for (int j = 0; j < 64; j++)
+					claims[claimIndex((i << 6) + j)] = 0;
+		}
+		
+		baseWord = Math.max(baseWord, word);
+	}
+	
+	/**
+	 * Moves the claims from one cycle up to another, inclusive, by the given number of
+	 * cycles, forgetting every other claim.
+	 */
+	public void shift(long from, long to, long cycles) {
+		int[] counts = new int[(int) (to - from + 1)];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = getClaims(from + i);
+		
+		clear();
+		discardBefore(from + cycles);
+		for (int i = 0; i < counts.length; i++)
+			for (int j = 0; j < counts[i]; j++)
+				claim(from + cycles + i);
+	}
+	
+	public void clear() {
+		words = new long[16];
+		if (claims != null)
+			claims = new int[words.length << 6];
+		baseWord = 0;
+	}
+	
+	public CycleSlots copy() {
+		CycleSlots copy = new CycleSlots(capacity);
+		copy.words = words.clone();
+		if (claims != null)
+			copy.claims = claims.clone();
+		copy.baseWord = baseWord;
+		return copy;
+	}
+	
+	private long bits(long word) {
+		return (word - baseWord < words.length)? words[index(word)] : 0;
+	}
+	
+	private int index(long word) {
+		return (int) word & (words.length - 1);
+	}
+	
+	private int claimIndex(long cycle) {
+		return (int) cycle & (claims.length - 1);
+	}
+	
+	private void grow() {
+		long[] grown = new long[words.length * 2];
+		for (long i = baseWord; i < baseWord + words.length; i++)
+			grown[(int) i & (grown.length - 1)] = words[index(i)];
+		
+		if (claims != null) {
+			int[] grownClaims = new int[grown.length << 6];
+			for (long i = baseWord << 6; i < (baseWord + words.length) << 6; i++)
+				grownClaims[(int) i & (grownClaims.length - 1)] = claims[claimIndex(i)];
+			claims = grownClaims;
+		}
+		words = grown;
+	}
+
+}
@@ -0,0 +1,79 @@
+package engine.timing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.types.Instruction;
+
+/**
+ * A bounded queue passing executed instructions from the thread executing a program to
+ * the one scheduling it, without locks. Only one thread may put instructions and only
+ * one may take them. Each side publishes its own position with an ordered write and
+ * keeps a copy of the other's, reading it again only when the copy says the ring is
+ * full or empty, so that the two sides rarely touch the same cache line.
+ */
+public class InstructionRing {
+	
+	private Instruction[] slots;
+	private int mask;
+	
+	// Position of the next instruction to put, and the copy of the taking side's
+	private AtomicLong tail;
+	private long headCopy;
+	
+	// Position of the next instruction to take, and the copy of the putting side's
+	private AtomicLong head;
+	private long tailCopy;
+	
+	/**
+	 * @param capacity the number of instructions the ring holds, a power of 2
+	 */
+	public InstructionRing(int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Ring capacity must be a power of 2");
+		
+		slots = new Instruction[capacity];
+		mask = capacity - 1;
+		tail = new AtomicLong();
+		head = new AtomicLong();
+	}
+	
+	/**
+	 * Puts an instruction at the end of the ring, unless it is full.
+	 * @return whether it was put
+	 */
+	public boolean offer(Instruction instruction) {
+		long position = tail.get();
+		if (position - headCopy == slots.length) {
+			headCopy = head.get();
+			if (position - headCopy == slots.length)
+				return false;
+		}
+		
+		slots[(int) position & mask] = instruction;
+		tail.lazySet(position + 1);
+		return true;
+	}
+	
+	/**
+	 * Takes the instruction at the front of the ring.
+	 * @return the instruction, or null if the ring is empty
+	 */
+	public Instruction poll() {
+		long position = head.get();
+		if (position == tailCopy) {
+			tailCopy = tail.get();
+			if (position == tailCopy)
+				return null;
+		}
+		
+		Instruction instruction = slots[(int) position & mask];
+		slots[(int) position & mask] = null;
+		head.lazySet(position + 1);
+		return instruction;
+	}
+	
+	public int getCapacity() {
+		return slots.length;
+	}
+
+}
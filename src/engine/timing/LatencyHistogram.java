@@ -0,0 +1,76 @@
+package engine.timing;
+
+/**
+ * A fixed-size histogram of latencies in power of two buckets, where bucket k counts
+ * the latencies in [2^(k-1), 2^k) and bucket 0 counts the zero (or negative) ones.
+ */
+public class LatencyHistogram {
+
+	private long[] buckets;
+	private long count;
+	private long sum;
+	private long max;
+
+	public LatencyHistogram() {
+		buckets = new long[64];
+	}
+
+	public void add(long latency) {
+		buckets[(latency <= 0)? 0 : 64 - Long.numberOfLeadingZeros(latency)]++;
+		count++;
+		sum += latency;
+		max = (count == 1)? latency : Math.max(max, latency);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return (count == 0)? 0 : sum * 1.0 / count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile, which is the upper end of the
+	 * bucket containing it, or the maximum latency if that is smaller.
+	 */
+	public long getPercentile(double percentile) {
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank && seen > 0)
+				return Math.min(max, (i == 0)? 0 : (1L << i) - 1);
+		}
+		return max;
+	}
+
+	/**
+	 * Adds the latencies added between two copies of this histogram the given number
+	 * of times, which leaves the maximum as it is.
+	 */
+	public void repeat(LatencyHistogram start, LatencyHistogram end, long times) {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] += times * (end.buckets[i] - start.buckets[i]);
+		count += times * (end.count - start.count);
+		sum += times * (end.sum - start.sum);
+	}
+
+	public long getBucket(int bucket) {
+		return buckets[bucket];
+	}
+
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.buckets = buckets.clone();
+		copy.count = count;
+		copy.sum = sum;
+		copy.max = max;
+		return copy;
+	}
+
+}
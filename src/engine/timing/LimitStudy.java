@@ -0,0 +1,200 @@
+package engine.timing;
+
+import engine.types.FunctionType;
+import engine.types.Instruction;
+
+/**
+ * Schedules a trace of executed instructions on ideal machines in a single pass, to find
+ * the dataflow limit and how far each resource alone pulls a workload away from it. Every
+ * machine fetches and issues any number of instructions from cycle 1, starts each as soon
+ * as its operands are written, forwards a load's data straight from the last store to
+ * its address as soon as that store's data is ready and commits in order with no limit
+ * per cycle. Loads take no unit, as in the real machine, so none of the machines takes
+ * longer than its actual schedule. All machines but the first then
+ * keep a single constraint of the real one: a finite ROB, finite units, finite buses or
+ * the front end stalling on each mispredicted instruction until it commits.
+ *
+ * Each instruction takes constant time on each machine, except for searching the slots
+ * of a unit or bus, which only skips cycles that were partly taken when the search began.
+ */
+public class LimitStudy {
+	
+	public static final int DATAFLOW = 0;
+	public static final int ROB = 1;
+	public static final int UNITS = 2;
+	public static final int CDB = 3;
+	public static final int PREDICTION = 4;
+	
+	private static final String[] names = {"Dataflow", "Finite ROB", "Finite Units", "Finite CDB", "Branch Prediction"};
+	private static final int REGISTERS = 8;
+	private static final int[] DATA_OPERAND = {0};
+	
+	private Machine[] machines;
+	private long instructions;
+	
+	/**
+	 * @param configuration the configuration of the units of the real machine, as taken by
+	 * the unit set
+	 * @param threads the number of hardware contexts, each with registers of its own
+	 * @param buses the number of common data buses
+	 * @param penalty the cycles taken to refill the front end after a mispredicted
+	 * instruction commits
+	 * @param forwarding the cycles a load takes its data from a store in
+	 */
+	public LimitStudy(int[][] configuration, int threads, int buses, int penalty, int forwarding) {
+		machines = new Machine[names.length];
+		for (int i = 0; i < machines.length; i++)
+			machines[i] = new Machine(threads, forwarding);
+		
+		machines[ROB].rob = new long[configuration[0][0]];
+		machines[UNITS].units = new Slots[configuration.length - 1];
+		machines[UNITS].intervals = new int[configuration.length - 1];
+		for (int i = 0; i < configuration.length - 1; i++) {
+			int[] row = configuration[i + 1];
+			machines[UNITS].units[i] = new Slots(row[0]);
+			machines[UNITS].intervals[i] = (row.length > 3)? Math.max(1, row[3]) : 1;
+		}
+		machines[CDB].cdb = new Slots(buses);
+		machines[PREDICTION].penalty = penalty;
+	}
+	
+	/**
+	 * Adds the next instruction of the trace, whose execution time must already be set.
+	 * @param mispredicted whether the front end of the real machine mispredicted it
+	 */
+	public void add(Instruction instruction, boolean mispredicted) {
+		for (Machine machine : machines)
+			machine.add(instruction, mispredicted);
+		instructions++;
+	}
+	
+	public long getInstructions() {
+		return instructions;
+	}
+	
+	/**
+	 * Returns the cycle the last instruction commits in on one of the machines.
+	 */
+	public long getCycles(int machine) {
+		return machines[machine].lastCommit;
+	}
+	
+	public double getIpc(int machine) {
+		return (machines[machine].lastCommit == 0)? 0 : instructions * 1.0 / machines[machine].lastCommit;
+	}
+	
+	public static String getName(int machine) {
+		return names[machine];
+	}
+	
+	public static int getMachines() {
+		return names.length;
+	}
+	
+	private static class Machine {
+		
+		private long[] writerCycles;
+		private AddressTable stores;
+		private int forwarding;
+		private long lastCommit;
+		
+		// The one constraint of the machine, left null or -1 when it does not have it, with
+		// the ROB as a ring of the commits of the last instructions
+		private long[] rob;
+		private Slots[] units;
+		private int[] intervals;
+		private Slots cdb;
+		private int penalty;
+		
+		// Instructions added, which places the next commit in the ring of the ROB, and the
+		// cycle the front end resumes fetching in after the last mispredicted instruction
+		private long robCount;
+		private long resume;
+		
+		Machine(int threads, int forwarding) {
+			writerCycles = new long[REGISTERS * threads];
+			stores = new AddressTable();
+			this.forwarding = forwarding;
+			penalty = -1;
+			resume = 1;
+		}
+		
+		void add(Instruction instruction, boolean mispredicted) {
+			FunctionType function = instruction.getFunction();
+			// An entry of the ROB can be taken again in the cycle it is freed in, as the real
+			// machine does when it still has issue slots left in that cycle
+			long issued = resume;
+			if (rob != null && robCount >= rob.length)
+				issued = Math.max(issued, rob[(int) (robCount % rob.length)]);
+			
+			long ready = getReady(instruction, function.getSourceOperands(), issued);
+			long started = ready;
+			long executed = started + instruction.getExecutionTime();
+			if (function == FunctionType.LOAD && instruction.getEffectiveAddress() != -1) {
+				// The shorter of forwarding and the access, as the real machine reads memory
+				// instead once the store committed
+				int store = stores.find(instruction.getEffectiveAddress());
+				if (store != -1) {
+					started = Math.max(ready, stores.get(store, AddressTable.DATA_READY));
+					executed = started + Math.min(instruction.getExecutionTime(), forwarding);
+				}
+			} else if (units != null && function.ordinal() < units.length) {
+				started = units[function.ordinal()].claim(ready, intervals[function.ordinal()]);
+				executed = started + instruction.getExecutionTime();
+			}
+			
+			long written = (cdb != null)? cdb.claim(executed + 1, 1) : executed + 1;
+			lastCommit = Math.max(lastCommit, written + 1);
+			
+			if (function.writesRegister())
+				writerCycles[instruction.getThread() * REGISTERS + instruction.getDestination()] = written;
+			else if (function == FunctionType.STORE && instruction.getEffectiveAddress() != -1)
+				stores.put(instruction.getEffectiveAddress(), 0, 0, getReady(instruction, DATA_OPERAND, issued), written);
+			
+			if (rob != null)
+				rob[(int) (robCount++ % rob.length)] = lastCommit;
+			if (mispredicted && penalty != -1)
+				resume = lastCommit + 1 + penalty;
+		}
+		
+		/**
+		 * Returns the cycle in which the given source registers of an instruction are all
+		 * written, or its issue cycle if later.
+		 */
+		private long getReady(Instruction instruction, int[] sources, long issued) {
+			long ready = issued;
+			for (int source : sources) {
+				int register = instruction.getRegisterNumber(source);
+				if (register != -1)
+					ready = Math.max(ready, writerCycles[instruction.getThread() * REGISTERS + register]);
+			}
+			return ready;
+		}
+	
+	}
+	
+	/**
+	 * The slots of a unit type or of the buses, remembering the first cycle not yet full,
+	 * so that the many instructions an ideal machine has ready at once do not search the
+	 * same full cycles over and over. The full cycles before it are forgotten.
+	 */
+	private static class Slots {
+		
+		private CycleSlots slots;
+		private long free;
+		
+		Slots(int capacity) {
+			slots = new CycleSlots(capacity);
+		}
+		
+		long claim(long cycle, int length) {
+			long claimed = slots.claim(Math.max(cycle, free), length);
+			while (slots.getClaims(free) == slots.getCapacity())
+				free++;
+			slots.discardBefore(free);
+			return claimed;
+		}
+	
+	}
+
+}
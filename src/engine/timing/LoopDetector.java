@@ -0,0 +1,155 @@
+package engine.timing;
+
+import java.util.Arrays;
+
+import engine.types.Instruction;
+
+/**
+ * Remembers the last scheduled instructions with their timings, by their sequence number
+ * in the run, and finds where iterations of a loop begin. An iteration begins at every
+ * jump back to the instruction the last jump back went to, and ends where the next one
+ * begins. Iterations are only told apart by the instructions they run, so that the
+ * scheduler can check which ones may be timed like the iteration before them.
+ */
+public class LoopDetector {
+	
+	public static final int ISSUED = 0;
+	public static final int EXECUTED = 1;
+	public static final int WRITTEN = 2;
+	public static final int COMMITTED = 3;
+	public static final int READY = 4;
+	public static final int STARTED = 5;
+	
+	// Sequence number of the store a load took its data from, or -1, and when a store had
+	// its address and its data
+	public static final int SOURCE = 6;
+	public static final int ADDRESS_READY = 7;
+	public static final int DATA_READY = 8;
+	
+	// The longest iteration looked for, with room for the two before the current one
+	public static final int MAX_LENGTH = 1024;
+	private static final int CAPACITY = 4 * MAX_LENGTH;
+	
+	private Instruction[] instructions;
+	private boolean[] mispredictions;
+	private byte[] causes;
+	private boolean[] replays;
+	private long[][] columns;
+	private long next;
+	private long first;
+	
+	private int headAddress;
+	private long headSequence;
+	
+	public LoopDetector() {
+		instructions = new Instruction[CAPACITY];
+		mispredictions = new boolean[CAPACITY];
+		causes = new byte[CAPACITY];
+		replays = new boolean[CAPACITY];
+		columns = new long[DATA_READY + 1][CAPACITY];
+		headAddress = -1;
+	}
+	
+	/**
+	 * Returns the length of the iteration that ends before the given instruction, if it
+	 * begins another iteration of the same loop and the iteration before ran the same
+	 * instructions as the one before that, or 0 otherwise.
+	 * @param sequence the sequence number of the instruction, which is scheduled next
+	 */
+	public int getIteration(long sequence, Instruction instruction) {
+		if (sequence != next || sequence == first || instruction.getAddress() > instructions[index(sequence - 1)].getAddress())
+			return 0;
+		
+		if (instruction.getAddress() != headAddress) {
+			headAddress = instruction.getAddress();
+			headSequence = sequence;
+			return 0;
+		}
+		
+		int length = (int) (sequence - headSequence);
+		headSequence = sequence;
+		if (length > MAX_LENGTH || sequence - 2 * length < first)
+			return 0;
+		
+		for (long i = sequence - length; i < sequence; i++)
+			if (!matches(i - length, instructions[index(i)], mispredictions[index(i)]))
+				return 0;
+		return length;
+	}
+	
+	/**
+	 * Checks whether an instruction runs like a recorded one: the same instruction, taking
+	 * the same time in each level of the memory, mispredicted the same way and after the
+	 * same context switch, if any.
+	 */
+	public boolean matches(long sequence, Instruction instruction, boolean mispredicted) {
+		if (sequence < first || sequence >= next)
+			return false;
+		
+		Instruction recorded = instructions[index(sequence)];
+		return recorded.getAddress() == instruction.getAddress() && recorded.getFunction() == instruction.getFunction() &&
+				recorded.getExecutionTime() == instruction.getExecutionTime() && recorded.getSwitchCycles() == instruction.getSwitchCycles() &&
+				(recorded.getEffectiveAddress() == -1) == (instruction.getEffectiveAddress() == -1) &&
+				Arrays.equals(recorded.getAccessTimes(), instruction.getAccessTimes()) && mispredictions[index(sequence)] == mispredicted;
+	}
+	
+	/**
+	 * Records the next scheduled instruction.
+	 * @param values its timings followed by the other columns, of which SOURCE, ADDRESS_READY
+	 * and DATA_READY are only read for loads and stores
+	 */
+	public void record(Instruction instruction, boolean mispredicted, int cause, boolean replayed, long[] values) {
+		int slot = index(next);
+		instructions[slot] = instruction;
+		mispredictions[slot] = mispredicted;
+		causes[slot] = (byte) cause;
+		replays[slot] = replayed;
+		for (int i = 0; i < columns.length; i++)
+			columns[i][slot] = values[i];
+		
+		next++;
+		first = Math.max(first, next - CAPACITY);
+	}
+	
+	/**
+	 * Returns whether the instruction with the given sequence number is still recorded.
+	 */
+	public boolean contains(long sequence) {
+		return sequence >= first && sequence < next;
+	}
+	
+	public long get(long sequence, int column) {
+		return columns[column][index(sequence)];
+	}
+	
+	public Instruction getInstruction(long sequence) {
+		return instructions[index(sequence)];
+	}
+	
+	public boolean isMispredicted(long sequence) {
+		return mispredictions[index(sequence)];
+	}
+	
+	public int getCause(long sequence) {
+		return causes[index(sequence)];
+	}
+	
+	public boolean isReplayed(long sequence) {
+		return replays[index(sequence)];
+	}
+	
+	/**
+	 * Forgets every recorded instruction, starting again from the given sequence number.
+	 */
+	public void clear(long sequence) {
+		Arrays.fill(instructions, null);
+		next = sequence;
+		first = sequence;
+		headAddress = -1;
+	}
+	
+	private int index(long sequence) {
+		return (int) (sequence & (CAPACITY - 1));
+	}
+
+}
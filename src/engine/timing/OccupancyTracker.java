@@ -0,0 +1,318 @@
+package engine.timing;
+
+import java.util.Arrays;
+
+import engine.types.FunctionType;
+
+/**
+ * Samples every cycle how many entries of the ROB, of the reservation stations and
+ * units of each type and of the common data buses are in use. Instructions add the
+ * cycles they hold each resource as differences in a ring, and a cycle is sampled once
+ * no later instruction can change it, which is once an instruction issues after it.
+ *
+ * Each resource keeps a histogram of its levels, which grows only up to the highest
+ * level seen, and a time series of a fixed number of points. When the series fills up,
+ * neighbouring points are merged and each point covers twice as many cycles, so memory
+ * stays bounded however long the run.
+ *
+ * A period of the schedule can be recorded and then repeated, for a loop that holds
+ * the resources the same way in each iteration, by adding up the levels sampled in it
+ * instead of sampling cycle by cycle.
+ */
+public class OccupancyTracker {
+	
+	public static final int ROB = 0;
+	public static final int CDB = 1;
+	public static final int POINTS = 128;
+	
+	// Types of unit with their own reservation stations, which are the first ones
+	private static final int UNIT_TYPES = FunctionType.STORE.ordinal() + 1;
+	private static final int RESOURCES = 2 + 2 * UNIT_TYPES;
+	// Most cycles a recorded period can span
+	private static final int PERIOD_LIMIT = 1 << 14;
+	
+	// Changes of level by cycle, from the next cycle to sample onwards
+	private int[][] deltas;
+	private long next;
+	private long end;
+	private int[] levels;
+	
+	private long[][] histograms;
+	private long[][] series;
+	private int points;
+	private long span;
+	private long[] partial;
+	private long partialCycles;
+	
+	// Sums of the levels of each resource over the first cycles of the recorded period,
+	// with the histograms it started with, or their differences once it ended
+	private long[][] periodSums;
+	private long[][] periodHistograms;
+	private long periodFrom;
+	private long periodCycles;
+	
+	public OccupancyTracker() {
+		deltas = new int[RESOURCES][64];
+		next = 1;
+		end = 1;
+		levels = new int[RESOURCES];
+		histograms = new long[RESOURCES][1];
+		series = new long[RESOURCES][POINTS];
+		span = 1;
+		partial = new long[RESOURCES];
+	}
+	
+	/**
+	 * Returns the resource index of the reservation stations of a type of unit.
+	 */
+	public static int getStations(FunctionType function) {
+		return 2 + function.ordinal();
+	}
+	
+	/**
+	 * Returns the resource index of the units of a type, which are counted as busy for
+	 * the cycles they can not take another instruction.
+	 */
+	public static int getUnits(FunctionType function) {
+		return 2 + UNIT_TYPES + function.ordinal();
+	}
+	
+	public static boolean hasUnits(FunctionType function) {
+		return function.ordinal() < UNIT_TYPES;
+	}
+	
+	/**
+	 * Adds an instruction issued no earlier than the ones added before it.
+	 * @param started the cycle it started executing in
+	 * @param interval the cycles its unit is busy with it
+	 */
+	public void add(FunctionType function, long issued, long started, int interval, long written, long committed) {
+		sampleBefore(issued);
+		hold(ROB, issued, committed);
+		if (hasUnits(function)) {
+			hold(getStations(function), issued, committed);
+			hold(getUnits(function), Math.max(started, issued), Math.max(started, issued) + interval);
+		}
+		hold(CDB, written, written + 1);
+	}
+	
+	/**
+	 * Samples the cycles left, up to the last one any added instruction holds a resource in.
+	 */
+	public void finish() {
+		sampleBefore(end);
+	}
+	
+	/**
+	 * Returns the number of cycles sampled.
+	 */
+	public long getCycles() {
+		return next - 1;
+	}
+	
+	/**
+	 * Returns the number of sampled cycles in which each level of a resource was in use,
+	 * indexed by level.
+	 */
+	public long[] getHistogram(int resource) {
+		return histograms[resource].clone();
+	}
+	
+	/**
+	 * Returns the mean level of a resource over each stretch of {@link #getSpan()} cycles.
+	 */
+	public double[] getSeries(int resource) {
+		double[] means = new double[points];
+		for (int i = 0; i < points; i++)
+			means[i] = series[resource][i] * 1.0 / span;
+		return means;
+	}
+	
+	/**
+	 * Returns the number of cycles each point of the time series covers.
+	 */
+	public long getSpan() {
+		return span;
+	}
+	
+	/**
+	 * Starts recording a period from the next cycle to sample.
+	 */
+	public void mark() {
+		periodSums = new long[RESOURCES][64];
+		periodHistograms = new long[RESOURCES][];
+		for (int i = 0; i < RESOURCES; i++)
+			periodHistograms[i] = histograms[i].clone();
+		periodFrom = next;
+		periodCycles = -1;
+	}
+	
+	/**
+	 * Ends the period being recorded before the next cycle to sample.
+	 * @return whether it was recorded, which it is not if it spans too many cycles
+	 */
+	public boolean endPeriod() {
+		if (periodSums == null)
+			return false;
+		
+		periodCycles = next - periodFrom;
+		for (int i = 0; i < RESOURCES; i++) {
+			long[] difference = histograms[i].clone();
+			for (int j = 0; j < periodHistograms[i].length; j++)
+				difference[j] -= periodHistograms[i][j];
+			periodHistograms[i] = difference;
+		}
+		return true;
+	}
+	
+	/**
+	 * Samples the given number of recorded periods, where the ring holds the same
+	 * changes ahead as when the period started and the levels are the same too.
+	 */
+	public void repeat(long times) {
+		long cycles = times * periodCycles;
+		for (int i = 0; i < RESOURCES; i++) {
+			if (periodHistograms[i].length > histograms[i].length)
+				histograms[i] = Arrays.copyOf(histograms[i], periodHistograms[i].length);
+			for (int j = 0; j < periodHistograms[i].length; j++)
+				histograms[i][j] += times * periodHistograms[i][j];
+		}
+		
+		for (long sampled = 0; sampled < cycles; ) {
+			long stretch = Math.min(cycles - sampled, span - partialCycles);
+			for (int i = 0; i < RESOURCES; i++)
+				partial[i] += getPeriodSum(i, sampled + stretch) - getPeriodSum(i, sampled);
+			sampled += stretch;
+			partialCycles += stretch;
+			if (partialCycles == span)
+				addPoint();
+		}
+		
+		// Moves the changes ahead along with the cycles sampled
+		for (int i = 0; i < RESOURCES; i++) {
+			int[] moved = new int[deltas[i].length];
+			int mask = deltas[i].length - 1;
+			for (long cycle = next; cycle < next + deltas[i].length; cycle++)
+				moved[(int) (cycle + cycles) & mask] = deltas[i][(int) cycle & mask];
+			deltas[i] = moved;
+		}
+		next += cycles;
+		end += cycles;
+	}
+	
+	/**
+	 * Drops the recorded period, or stops recording one.
+	 */
+	public void clearPeriod() {
+		periodSums = null;
+		periodHistograms = null;
+	}
+	
+	public OccupancyTracker copy() {
+		OccupancyTracker copy = new OccupancyTracker();
+		for (int i = 0; i < RESOURCES; i++) {
+			copy.deltas[i] = deltas[i].clone();
+			copy.histograms[i] = histograms[i].clone();
+			copy.series[i] = series[i].clone();
+		}
+		copy.next = next;
+		copy.end = end;
+		copy.levels = levels.clone();
+		copy.points = points;
+		copy.span = span;
+		copy.partial = partial.clone();
+		copy.partialCycles = partialCycles;
+		return copy;
+	}
+	
+	private void hold(int resource, long from, long to) {
+		if (to <= from)
+			return;
+		
+		while (to - next >= deltas[resource].length)
+			grow();
+		
+		int mask = deltas[resource].length - 1;
+		deltas[resource][(int) from & mask]++;
+		deltas[resource][(int) to & mask]--;
+		end = Math.max(end, to);
+	}
+	
+	private void sampleBefore(long cycle) {
+		int mask = deltas[0].length - 1;
+		boolean recording = periodSums != null && periodCycles < 0;
+		for (; next < cycle; next++) {
+			int slot = (int) next & mask;
+			for (int i = 0; i < RESOURCES; i++) {
+				levels[i] += deltas[i][slot];
+				deltas[i][slot] = 0;
+				if (levels[i] >= histograms[i].length)
+					histograms[i] = Arrays.copyOf(histograms[i], levels[i] + 1);
+				histograms[i][levels[i]]++;
+				partial[i] += levels[i];
+			}
+			if (recording)
+				recording = recordPeriod();
+			
+			if (++partialCycles == span)
+				addPoint();
+		}
+	}
+	
+	private boolean recordPeriod() {
+		int cycle = (int) (next - periodFrom);
+		if (cycle >= PERIOD_LIMIT) {
+			clearPeriod();
+			return false;
+		}
+		
+		for (int i = 0; i < RESOURCES; i++) {
+			if (cycle + 1 >= periodSums[i].length)
+				periodSums[i] = Arrays.copyOf(periodSums[i], periodSums[i].length * 2);
+			periodSums[i][cycle + 1] = periodSums[i][cycle] + levels[i];
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the sum of the levels of a resource over the given number of cycles of
+	 * repeated periods.
+	 */
+	private long getPeriodSum(int resource, long cycles) {
+		return cycles / periodCycles * periodSums[resource][(int) periodCycles]
+				+ periodSums[resource][(int) (cycles % periodCycles)];
+	}
+	
+	private void addPoint() {
+		if (points == POINTS) {
+			// Halves the resolution of the series, merging each pair of points
+			for (int i = 0; i < RESOURCES; i++) {
+				for (int j = 0; j < POINTS / 2; j++)
+					series[i][j] = series[i][2 * j] + series[i][2 * j + 1];
+				Arrays.fill(series[i], POINTS / 2, POINTS, 0);
+			}
+			points = POINTS / 2;
+			span *= 2;
+			if (partialCycles < span)
+				return;
+		}
+		
+		for (int i = 0; i < RESOURCES; i++) {
+			series[i][points] = partial[i];
+			partial[i] = 0;
+		}
+		points++;
+		partialCycles = 0;
+	}
+	
+	private void grow() {
+		for (int i = 0; i < RESOURCES; i++) {
+			int[] grown = new int[deltas[i].length * 2];
+			int mask = deltas[i].length - 1;
+			for (long cycle = next; cycle < next + deltas[i].length; cycle++)
+				grown[(int) cycle & (grown.length - 1)] = deltas[i][(int) cycle & mask];
+			deltas[i] = grown;
+		}
+	}
+
+}
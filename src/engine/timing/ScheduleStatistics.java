@@ -0,0 +1,198 @@
+package engine.timing;
+
+import java.util.Arrays;
+
+import engine.types.FunctionType;
+import engine.types.Instruction;
+
+/**
+ * Running aggregates of scheduled instructions, so that statistics of a run do not
+ * require keeping its instructions.
+ */
+public class ScheduleStatistics {
+
+	private long instructions;
+	private long cycles;
+	private long[] threadInstructions;
+	private long[] threadCycles;
+	private LatencyHistogram[] latencies;
+	private long forwarded;
+	private long replayed;
+	private CpiStack cpiStack;
+	private OccupancyTracker occupancy;
+	
+	// Copies from the start and end of a recorded period, the end one null until it ends
+	private ScheduleStatistics periodStart;
+	private ScheduleStatistics periodEnd;
+
+	public ScheduleStatistics() {
+		latencies = new LatencyHistogram[FunctionType.values().length];
+		for (int i = 0; i < latencies.length; i++)
+			latencies[i] = new LatencyHistogram();
+		cpiStack = new CpiStack();
+		occupancy = new OccupancyTracker();
+		threadInstructions = new long[1];
+		threadCycles = new long[1];
+	}
+
+	/**
+	 * Adds an instruction scheduled after all the previously added ones.
+	 */
+	public void add(Instruction instruction, long issued, long written, long committed) {
+		instructions++;
+		latencies[instruction.getFunction().ordinal()].add(written - issued);
+		if (instruction.getThread() >= threadInstructions.length) {
+			threadInstructions = Arrays.copyOf(threadInstructions, instruction.getThread() + 1);
+			threadCycles = Arrays.copyOf(threadCycles, instruction.getThread() + 1);
+		}
+		threadInstructions[instruction.getThread()]++;
+		threadCycles[instruction.getThread()] += committed - cycles;
+		cycles = committed;
+	}
+
+	/**
+	 * Counts a load that took its data from an earlier store still in the store queue,
+	 * and whether it was replayed for having started before that store's address was known.
+	 */
+	public void addForwarded(boolean replayed) {
+		forwarded++;
+		if (replayed)
+			this.replayed++;
+	}
+
+	/**
+	 * Starts recording a period of the schedule, such as an iteration of a loop, which
+	 * has to start with the resources in the same use as it ends with.
+	 */
+	public void mark() {
+		periodStart = copyCounts();
+		periodEnd = null;
+		occupancy.mark();
+	}
+
+	/**
+	 * Ends the period being recorded.
+	 * @return whether it was recorded, which it is not if it spans too many cycles
+	 */
+	public boolean endPeriod() {
+		periodEnd = copyCounts();
+		return occupancy.endPeriod();
+	}
+
+	/**
+	 * Adds the given number of periods scheduled just like the recorded one right after
+	 * the previously added instructions, without going through their instructions.
+	 */
+	public void repeat(long times) {
+		instructions += times * (periodEnd.instructions - periodStart.instructions);
+		cycles += times * (periodEnd.cycles - periodStart.cycles);
+		for (int i = 0; i < periodEnd.threadInstructions.length; i++) {
+			threadInstructions[i] += times * (periodEnd.getInstructions(i) - periodStart.getInstructions(i));
+			threadCycles[i] += times * (periodEnd.getCycles(i) - periodStart.getCycles(i));
+		}
+		for (int i = 0; i < latencies.length; i++)
+			latencies[i].repeat(periodStart.latencies[i], periodEnd.latencies[i], times);
+		forwarded += times * (periodEnd.forwarded - periodStart.forwarded);
+		replayed += times * (periodEnd.replayed - periodStart.replayed);
+		cpiStack.repeat(periodStart.cpiStack, periodEnd.cpiStack, times);
+		occupancy.repeat(times);
+	}
+
+	/**
+	 * Drops the recorded period, or stops recording one.
+	 */
+	public void clearPeriod() {
+		periodStart = null;
+		periodEnd = null;
+		occupancy.clearPeriod();
+	}
+
+	public long getInstructions() {
+		return instructions;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	public double getIpc() {
+		return (cycles == 0)? 0 : instructions * 1.0 / cycles;
+	}
+	
+	/**
+	 * Returns the number of instructions added from the given hardware context.
+	 */
+	public long getInstructions(int thread) {
+		return (thread < threadInstructions.length)? threadInstructions[thread] : 0;
+	}
+	
+	/**
+	 * Returns the instructions of the given hardware context per cycle of the whole run,
+	 * which add up to the IPC of all of them.
+	 */
+	public double getIpc(int thread) {
+		return (cycles == 0)? 0 : getInstructions(thread) * 1.0 / cycles;
+	}
+	
+	/**
+	 * Returns the cycles between the commits of earlier instructions and those of the given
+	 * hardware context, which add up to the cycles of the whole run. With contexts taking
+	 * turns, these are the cycles each one ran for, its context switches included.
+	 */
+	public long getCycles(int thread) {
+		return (thread < threadCycles.length)? threadCycles[thread] : 0;
+	}
+
+	public long getForwarded() {
+		return forwarded;
+	}
+
+	public long getReplayed() {
+		return replayed;
+	}
+
+	/**
+	 * Returns the cycles broken down by the reason they were spent, which the scheduler
+	 * adds for each instruction before the instruction itself.
+	 */
+	public CpiStack getCpiStack() {
+		return cpiStack;
+	}
+
+	/**
+	 * Returns the sampled occupancy of the ROB, stations, units and buses, which the
+	 * scheduler adds each instruction to.
+	 */
+	public OccupancyTracker getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Returns the histogram of the cycles spent by instructions of the given type
+	 * between issuing and writing their results.
+	 */
+	public LatencyHistogram getLatencies(FunctionType function) {
+		return latencies[function.ordinal()];
+	}
+
+	public ScheduleStatistics copy() {
+		ScheduleStatistics copy = copyCounts();
+		copy.occupancy = occupancy.copy();
+		return copy;
+	}
+
+	private ScheduleStatistics copyCounts() {
+		ScheduleStatistics copy = new ScheduleStatistics();
+		copy.instructions = instructions;
+		copy.cycles = cycles;
+		copy.threadInstructions = threadInstructions.clone();
+		copy.threadCycles = threadCycles.clone();
+		copy.forwarded = forwarded;
+		copy.replayed = replayed;
+		copy.cpiStack = cpiStack.copy();
+		for (int i = 0; i < latencies.length; i++)
+			copy.latencies[i] = latencies[i].copy();
+		return copy;
+	}
+
+}
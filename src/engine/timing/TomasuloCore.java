@@ -0,0 +1,682 @@
+package engine.timing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import engine.types.DisambiguationPolicy;
+import engine.types.FunctionType;
+import engine.types.Instruction;
+
+/**
+ * A cycle by cycle model of Tomasulo's algorithm with a reorder buffer, holding the
+ * reservation stations, ROB, register status table and common data bus explicitly.
+ * Cycles in which nothing can happen are skipped, going straight to the next one in
+ * which an instruction can issue, finish executing, write or commit.
+ *
+ * Executed instructions are fed in program order and the timings of each are passed
+ * to the listener as it commits. Instructions wait for every producer of their
+ * operands, and older instructions win the bus, so a younger instruction can never
+ * change the timings of an older one.
+ *
+ * Loads go through the same store queue model as the analytic scheduler, so both models
+ * give the same timings, except on the units given an initiation interval. These are
+ * taken by instructions as they get their operands, while the analytic scheduler claims
+ * them in program order, letting a younger instruction fill a gap before an older one
+ * starts. The cycles it would claim are followed alongside, to tell where they differ.
+ */
+public class TomasuloCore {
+	
+	public interface Listener {
+		
+		/**
+		 * @param reordered whether this or an older instruction started on a unit given an
+		 * initiation interval in another cycle than the analytic scheduler starts it in
+		 */
+		void committed(long sequence, long issued, long executed, long written, long committed, boolean reordered);
+	
+	}
+	
+	private static final int REGISTERS = 8;
+	private static final int ADDRESS_OPERAND = 1;
+	private static final int DATA_OPERAND = 0;
+	
+	private int[][] configuration;
+	private int issueWidth;
+	private int commitWidth;
+	private int buses;
+	private int penalty;
+	private Listener listener;
+	
+	// ROB entries, indexed by slot from the head in program order
+	private long[] sequences;
+	private Instruction[] instructions;
+	private long[] issued;
+	private long[] executed;
+	private long[] written;
+	private long[] operandsReady;
+	private int[] pendingOperands;
+	private int[][] consumers;
+	private int[] consumerCount;
+	private boolean[] mispredicted;
+	private int head;
+	private int count;
+	
+	// Reservation stations in use per unit, freed as their instructions commit
+	private int[] stationsUsed;
+	
+	// Units of the types given an initiation interval and the same units claimed in program
+	// order, with the slots of each type not claimed that way yet oldest first, the cycle
+	// each had its operands in, or -1, and started in, and the first instruction that
+	// started in another cycle than it would in program order, or -1
+	private int[] intervals;
+	private CycleSlots[] units;
+	private CycleSlots[] orderedUnits;
+	private ArrayList<ArrayDeque<Integer>> unclaimed;
+	private long[] readyCycles;
+	private long[] startCycles;
+	private long reordered;
+	
+	// The load/store queue: when the address and data of each store are known, or -1 with
+	// the slot producing them, the number of stores whose address is not known, and the
+	// store each load may take its data from with the cycle the load started in
+	private boolean conservative;
+	private int forwardLatency;
+	private int replayPenalty;
+	private long[] addressReady;
+	private long[] dataReady;
+	private int[] addressProducers;
+	private int[] dataProducers;
+	private int unknownAddresses;
+	private int[] forwardingStores;
+	private long[] forwardingSequences;
+	private long[] loadStarts;
+	
+	// Physical registers beyond the architectural ones, or -1 when unlimited, and those
+	// taken by the writers in flight, each freeing the one it replaced as it commits
+	private int renameRegisters;
+	private int renamed;
+	private int freedThisCycle;
+	
+	// ROB slot of the in-flight instruction producing each register of each hardware
+	// context, and last store to each address
+	private int[] registerStatus;
+	private HashMap<Integer, Integer> storeStatus;
+	
+	// Slots executing by the cycle they may write, and slots waiting for the bus by age
+	private CycleHeap executing;
+	private CycleHeap finished;
+	
+	private ArrayDeque<Instruction> pending;
+	private ArrayDeque<Boolean> pendingMispredictions;
+	private long nextSequence;
+	private long cycle;
+	private long lastIssue;
+	private int issuedAtLast;
+	private long lastCommit;
+	private int committedThisCycle;
+	private long simulatedCycles;
+	
+	// Whether each context waits for a mispredicted instruction to commit, and the cycle it
+	// fetches again in after the last one did
+	private boolean[] branchPending;
+	private long[] resumeCycles;
+	
+	/**
+	 * @param threads the number of hardware contexts whose instructions are fed, each with
+	 * registers of its own
+	 * @param penalty the cycles taken to refill the front end after a mispredicted
+	 * instruction commits
+	 * @param loadStore the load/store queue configuration, as taken by the analytic
+	 * scheduler
+	 */
+	public TomasuloCore(int[][] configuration, int threads, int penalty, int[] loadStore, Listener listener) {
+		this.configuration = configuration;
+		issueWidth = getWidth(configuration, 1);
+		commitWidth = getWidth(configuration, 2);
+		buses = getWidth(configuration, 3);
+		this.penalty = penalty;
+		this.listener = listener;
+		int size = configuration[0][0];
+		sequences = new long[size];
+		instructions = new Instruction[size];
+		issued = new long[size];
+		executed = new long[size];
+		written = new long[size];
+		operandsReady = new long[size];
+		pendingOperands = new int[size];
+		consumers = new int[size][4];
+		consumerCount = new int[size];
+		mispredicted = new boolean[size];
+		stationsUsed = new int[configuration.length - 1];
+		intervals = new int[configuration.length - 1];
+		units = new CycleSlots[intervals.length];
+		orderedUnits = new CycleSlots[intervals.length];
+		unclaimed = new ArrayList<ArrayDeque<Integer>>();
+		for (int i = 0; i < intervals.length; i++) {
+			intervals[i] = (configuration[i + 1].length > 3)? configuration[i + 1][3] : 0;
+			if (intervals[i] > 0) {
+				units[i] = new CycleSlots(configuration[i + 1][0]);
+				orderedUnits[i] = new CycleSlots(configuration[i + 1][0]);
+			}
+			unclaimed.add(new ArrayDeque<Integer>());
+		}
+		readyCycles = new long[size];
+		startCycles = new long[size];
+		reordered = -1;
+		conservative = loadStore[0] == DisambiguationPolicy.CONSERVATIVE.ordinal();
+		forwardLatency = loadStore[1];
+		replayPenalty = loadStore[2];
+		addressReady = new long[size];
+		dataReady = new long[size];
+		addressProducers = new int[size];
+		dataProducers = new int[size];
+		forwardingStores = new int[size];
+		forwardingSequences = new long[size];
+		loadStarts = new long[size];
+		renameRegisters = (configuration[0].length > 4)? configuration[0][4] - REGISTERS * threads : -1;
+		registerStatus = new int[REGISTERS * threads];
+		Arrays.fill(registerStatus, -1);
+		storeStatus = new HashMap<Integer, Integer>();
+		executing = new CycleHeap();
+		finished = new CycleHeap();
+		pending = new ArrayDeque<Instruction>();
+		pendingMispredictions = new ArrayDeque<Boolean>();
+		branchPending = new boolean[threads];
+		resumeCycles = new long[threads];
+	}
+	
+	private TomasuloCore(TomasuloCore core, Listener listener) {
+		configuration = core.configuration;
+		issueWidth = core.issueWidth;
+		commitWidth = core.commitWidth;
+		buses = core.buses;
+		penalty = core.penalty;
+		this.listener = listener;
+		sequences = core.sequences.clone();
+		instructions = core.instructions.clone();
+		issued = core.issued.clone();
+		executed = core.executed.clone();
+		written = core.written.clone();
+		operandsReady = core.operandsReady.clone();
+		pendingOperands = core.pendingOperands.clone();
+		consumers = new int[core.consumers.length][];
+		for (int i = 0; i < consumers.length; i++)
+			consumers[i] = core.consumers[i].clone();
+		consumerCount = core.consumerCount.clone();
+		mispredicted = core.mispredicted.clone();
+		head = core.head;
+		count = core.count;
+		stationsUsed = core.stationsUsed.clone();
+		intervals = core.intervals;
+		units = new CycleSlots[core.units.length];
+		orderedUnits = new CycleSlots[core.units.length];
+		unclaimed = new ArrayList<ArrayDeque<Integer>>();
+		for (int i = 0; i < units.length; i++) {
+			if (core.units[i] != null) {
+				units[i] = core.units[i].copy();
+				orderedUnits[i] = core.orderedUnits[i].copy();
+			}
+			unclaimed.add(new ArrayDeque<Integer>(core.unclaimed.get(i)));
+		}
+		readyCycles = core.readyCycles.clone();
+		startCycles = core.startCycles.clone();
+		reordered = core.reordered;
+		conservative = core.conservative;
+		forwardLatency = core.forwardLatency;
+		replayPenalty = core.replayPenalty;
+		addressReady = core.addressReady.clone();
+		dataReady = core.dataReady.clone();
+		addressProducers = core.addressProducers.clone();
+		dataProducers = core.dataProducers.clone();
+		unknownAddresses = core.unknownAddresses;
+		forwardingStores = core.forwardingStores.clone();
+		forwardingSequences = core.forwardingSequences.clone();
+		loadStarts = core.loadStarts.clone();
+		renameRegisters = core.renameRegisters;
+		renamed = core.renamed;
+		registerStatus = core.registerStatus.clone();
+		storeStatus = new HashMap<Integer, Integer>(core.storeStatus);
+		executing = core.executing.copy();
+		finished = core.finished.copy();
+		pending = new ArrayDeque<Instruction>(core.pending);
+		pendingMispredictions = new ArrayDeque<Boolean>(core.pendingMispredictions);
+		nextSequence = core.nextSequence;
+		cycle = core.cycle;
+		lastIssue = core.lastIssue;
+		issuedAtLast = core.issuedAtLast;
+		lastCommit = core.lastCommit;
+		branchPending = core.branchPending.clone();
+		resumeCycles = core.resumeCycles.clone();
+		simulatedCycles = core.simulatedCycles;
+	}
+	
+	/**
+	 * Queues an executed instruction to be issued after the ones fed before it. Its
+	 * execution time must already be set.
+	 * @param mispredicted whether the front end mispredicted it, so that no instruction
+	 * after it issues until it commits
+	 */
+	public void add(Instruction instruction, boolean mispredicted) {
+		pending.add(instruction);
+		pendingMispredictions.add(mispredicted);
+	}
+	
+	/**
+	 * Advances the machine as far as the fed instructions allow, stopping before the
+	 * first cycle in which the next instruction could issue if it was already known.
+	 */
+	public void advance() {
+		run(false);
+	}
+	
+	/**
+	 * Advances the machine until every fed instruction has committed.
+	 */
+	public void drain() {
+		run(true);
+	}
+	
+	/**
+	 * Returns a copy of the machine reporting to another listener, which can be drained
+	 * to find the final timings of the instructions in flight without disturbing this one.
+	 */
+	public TomasuloCore copy(Listener listener) {
+		return new TomasuloCore(this, listener);
+	}
+	
+	/**
+	 * Returns the number of instructions fed that have not committed yet.
+	 */
+	public int getInFlight() {
+		return count + pending.size();
+	}
+	
+	public long getCycle() {
+		return cycle;
+	}
+	
+	/**
+	 * Returns the number of cycles actually stepped through, excluding the skipped ones.
+	 */
+	public long getSimulatedCycles() {
+		return simulatedCycles;
+	}
+	
+	private void run(boolean drain) {
+		while (true) {
+			long next = getNextCycle();
+			if (next == -1)
+				return;
+			
+			long fetch = getFetchCycle();
+			if (!drain && pending.size() < issueWidth && fetch != -1 && fetch <= next)
+				return;
+			
+			cycle = next;
+			simulatedCycles++;
+			commit();
+			issue();
+			broadcast();
+			committedThisCycle = 0;
+			freedThisCycle = 0;
+		}
+	}
+	
+	/**
+	 * Returns the next cycle in which something can happen, or -1 if the machine is
+	 * empty and has nothing left to issue.
+	 */
+	private long getNextCycle() {
+		long next = Long.MAX_VALUE;
+		if (!pending.isEmpty() && canIssue())
+			next = Math.max(lastIssue + 1, getResume(pending.peek()));
+		
+		if (!finished.isEmpty())
+			next = Math.min(next, cycle + 1);
+		
+		if (!executing.isEmpty())
+			next = Math.min(next, executing.peekKey());
+		
+		if (count > 0 && written[head] != -1)
+			next = Math.min(next, written[head] + 1);
+		
+		if (next == Long.MAX_VALUE)
+			return -1;
+		
+		return Math.max(next, cycle + 1);
+	}
+	
+	/**
+	 * Returns the first cycle an instruction not fed yet could issue in, from any context
+	 * not waiting for a mispredicted instruction to commit, or -1 if every one is.
+	 */
+	private long getFetchCycle() {
+		long fetch = -1;
+		for (int i = 0; i < branchPending.length; i++)
+			if (!branchPending[i] && (fetch == -1 || resumeCycles[i] < fetch))
+				fetch = resumeCycles[i];
+		return (fetch == -1)? -1 : Math.max(lastIssue + 1, fetch);
+	}
+	
+	/**
+	 * Returns the first cycle the front end gives the given instruction in, after its
+	 * context's last mispredicted instruction and any context switch before it.
+	 */
+	private long getResume(Instruction instruction) {
+		long resume = resumeCycles[instruction.getThread()];
+		if (instruction.getSwitchCycles() > 0)
+			resume = Math.max(resume, lastCommit + 1 + instruction.getSwitchCycles());
+		return resume;
+	}
+	
+	/**
+	 * Checks the structural conditions for issuing the next instruction, which only a
+	 * commit can change. The first instruction after a context switch waits for the ROB
+	 * to drain.
+	 *
+	 * As in the analytic schedule, ROB entries and registers freed by this cycle's commits
+	 * can only be taken by an instruction that was not already waiting for them, one that
+	 * could first issue in this cycle. Reservation stations are always reused at once.
+	 */
+	private boolean canIssue() {
+		int freed = isIssueCandidate()? 0 : committedThisCycle;
+		if (branchPending[pending.peek().getThread()] || count + freed >= sequences.length)
+			return false;
+		
+		if (pending.peek().getSwitchCycles() > 0 && count > 0)
+			return false;
+		
+		freed = isIssueCandidate()? 0 : freedThisCycle;
+		if (renameRegisters != -1 && pending.peek().getFunction().writesRegister() && renamed + freed >= renameRegisters)
+			return false;
+		
+		int unit = pending.peek().getFunction().ordinal();
+		return unit >= stationsUsed.length || stationsUsed[unit] < configuration[unit + 1][0] * configuration[unit + 1][1];
+	}
+	
+	/**
+	 * Returns whether the current cycle is the first the next instruction could issue in,
+	 * given the issue width.
+	 */
+	private boolean isIssueCandidate() {
+		return cycle == ((issuedAtLast < issueWidth)? lastIssue : lastIssue + 1);
+	}
+	
+	/**
+	 * Commits finished instructions from the head of the ROB, as many as the commit
+	 * width allows.
+	 */
+	private void commit() {
+		while (committedThisCycle < commitWidth && count > 0 && written[head] != -1 && written[head] < cycle)
+			commit(head);
+	}
+	
+	private void commit(int slot) {
+		Instruction instruction = instructions[slot];
+		FunctionType function = instruction.getFunction();
+		if (function.ordinal() < stationsUsed.length)
+			stationsUsed[function.ordinal()]--;
+		
+		if (function.writesRegister()) {
+			renamed--;
+			freedThisCycle++;
+			int register = instruction.getThread() * REGISTERS + instruction.getDestination();
+			if (registerStatus[register] == slot)
+				registerStatus[register] = -1;
+		} else if (function == FunctionType.STORE) {
+			Integer store = storeStatus.get(instruction.getEffectiveAddress());
+			if (store != null && store == slot)
+				storeStatus.remove(instruction.getEffectiveAddress());
+		}
+		
+		if (mispredicted[slot]) {
+			branchPending[instruction.getThread()] = false;
+			resumeCycles[instruction.getThread()] = cycle + 1 + penalty;
+		}
+		
+		lastCommit = cycle;
+		committedThisCycle++;
+		instructions[slot] = null;
+		head = (head + 1) % sequences.length;
+		count--;
+		boolean reordered = this.reordered != -1 && sequences[slot] >= this.reordered;
+		listener.committed(sequences[slot], issued[slot], executed[slot], written[slot], cycle, reordered);
+	}
+	
+	/**
+	 * Issues the next instructions in program order, as many as the issue width allows,
+	 * stopping at the first one that can not issue.
+	 */
+	private void issue() {
+		if (cycle < lastIssue + 1)
+			return;
+		
+		for (int i = 0; i < issueWidth && !pending.isEmpty() && canIssue() && cycle >= getResume(pending.peek()); i++)
+			issue(pending.poll(), pendingMispredictions.poll());
+	}
+	
+	private void issue(Instruction instruction, boolean mispredicted) {
+		FunctionType function = instruction.getFunction();
+		int slot = (head + count) % sequences.length;
+		count++;
+		
+		sequences[slot] = nextSequence++;
+		instructions[slot] = instruction;
+		issued[slot] = cycle;
+		written[slot] = -1;
+		operandsReady[slot] = 0;
+		pendingOperands[slot] = 0;
+		consumerCount[slot] = 0;
+		if (function.ordinal() < stationsUsed.length)
+			stationsUsed[function.ordinal()]++;
+		
+		if (function.ordinal() < units.length && units[function.ordinal()] != null) {
+			readyCycles[slot] = -1;
+			unclaimed.get(function.ordinal()).add(slot);
+		}
+		
+		addressProducers[slot] = -1;
+		dataProducers[slot] = -1;
+		if (function == FunctionType.STORE) {
+			addressProducers[slot] = getProducer(instruction, ADDRESS_OPERAND);
+			addressReady[slot] = getKnown(instruction, ADDRESS_OPERAND);
+			dataProducers[slot] = getProducer(instruction, DATA_OPERAND);
+			dataReady[slot] = getKnown(instruction, DATA_OPERAND);
+			if (addressReady[slot] == -1)
+				unknownAddresses++;
+		} else if (function == FunctionType.LOAD && instruction.getEffectiveAddress() != -1) {
+			Integer store = storeStatus.get(instruction.getEffectiveAddress());
+			forwardingStores[slot] = (store == null)? -1 : store;
+			forwardingSequences[slot] = (store == null)? -1 : sequences[store];
+			loadStarts[slot] = -1;
+			
+			// Conservatively, a load waits for the addresses of all earlier stores. Those
+			// already known were known by now
+			for (int i = 0; conservative && unknownAddresses > 0 && i < count - 1; i++) {
+				int older = (head + i) % sequences.length;
+				if (instructions[older].getFunction() == FunctionType.STORE && addressReady[older] == -1)
+					depend(slot, addressProducers[older]);
+			}
+		}
+		
+		for (int source : function.getSourceOperands()) {
+			int register = instruction.getRegisterNumber(source);
+			if (register != -1 && registerStatus[instruction.getThread() * REGISTERS + register] != -1)
+				depend(slot, registerStatus[instruction.getThread() * REGISTERS + register]);
+		}
+		
+		if (function.writesRegister()) {
+			registerStatus[instruction.getThread() * REGISTERS + instruction.getDestination()] = slot;
+			renamed++;
+		} else if (function == FunctionType.STORE)
+			storeStatus.put(instruction.getEffectiveAddress(), slot);
+		
+		this.mispredicted[slot] = mispredicted;
+		branchPending[instruction.getThread()] = mispredicted;
+		
+		issuedAtLast = (cycle == lastIssue)? issuedAtLast + 1 : 1;
+		lastIssue = cycle;
+		if (pendingOperands[slot] == 0)
+			start(slot);
+	}
+	
+	/**
+	 * Makes an instruction wait for the result of an older one, unless it was already
+	 * written on the bus.
+	 */
+	private void depend(int slot, int producer) {
+		if (written[producer] != -1) {
+			operandsReady[slot] = Math.max(operandsReady[slot], written[producer]);
+			return;
+		}
+		
+		if (consumerCount[producer] == consumers[producer].length)
+			consumers[producer] = Arrays.copyOf(consumers[producer], consumerCount[producer] * 2);
+		
+		consumers[producer][consumerCount[producer]++] = slot;
+		pendingOperands[slot]++;
+	}
+	
+	private static int getWidth(int[][] configuration, int column) {
+		return (configuration[0].length > column)? configuration[0][column] : 1;
+	}
+	
+	/**
+	 * Returns the slot of the instruction in flight that has not written the given
+	 * register operand of an instruction yet, or -1 if its value is known.
+	 */
+	private int getProducer(Instruction instruction, int operand) {
+		int register = instruction.getRegisterNumber(operand);
+		if (register == -1)
+			return -1;
+		
+		int producer = registerStatus[instruction.getThread() * REGISTERS + register];
+		return (producer != -1 && written[producer] == -1)? producer : -1;
+	}
+	
+	/**
+	 * Returns the cycle the given register operand of an instruction issuing now is
+	 * known in, or -1 if it is not written yet.
+	 */
+	private long getKnown(Instruction instruction, int operand) {
+		int register = instruction.getRegisterNumber(operand);
+		int producer = (register == -1)? -1 : registerStatus[instruction.getThread() * REGISTERS + register];
+		if (producer == -1)
+			return cycle;
+		
+		return (written[producer] == -1)? -1 : Math.max(cycle, written[producer]);
+	}
+	
+	/**
+	 * Starts an instruction whose operands are all known, which is always in the cycle
+	 * the last of them was written in or the one it issued in.
+	 */
+	private void start(int slot) {
+		Instruction instruction = instructions[slot];
+		FunctionType function = instruction.getFunction();
+		long ready = Math.max(issued[slot], operandsReady[slot]);
+		if (function == FunctionType.LOAD && instruction.getEffectiveAddress() != -1)
+			startLoad(slot, ready);
+		else if (function.ordinal() < units.length && units[function.ordinal()] != null) {
+			// Cycles before this one can no longer be claimed
+			int unit = function.ordinal();
+			units[unit].discardBefore(cycle);
+			readyCycles[slot] = ready;
+			startCycles[slot] = units[unit].claim(ready, intervals[unit]);
+			execute(slot, startCycles[slot], instruction.getExecutionTime());
+			claimInOrder(unit);
+		} else
+			execute(slot, ready, instruction.getExecutionTime());
+	}
+	
+	/**
+	 * Claims the units of a type given an initiation interval in program order for the
+	 * instructions that have their operands, up to the first one still waiting for them,
+	 * noting the first that did not start in the cycle claimed.
+	 */
+	private void claimInOrder(int unit) {
+		ArrayDeque<Integer> waiting = unclaimed.get(unit);
+		while (!waiting.isEmpty() && readyCycles[waiting.peek()] != -1) {
+			int slot = waiting.poll();
+			orderedUnits[unit].discardBefore(issued[slot]);
+			long start = orderedUnits[unit].claim(readyCycles[slot], intervals[unit]);
+			if (start != startCycles[slot] && (reordered == -1 || sequences[slot] < reordered))
+				reordered = sequences[slot];
+		}
+	}
+	
+	/**
+	 * Starts a load once its address is known, and those of all earlier stores when
+	 * disambiguating conservatively. A load reads the cache unless the last earlier store
+	 * to its address is still in flight. Then it waits for that store's address and data
+	 * and has them forwarded, and when it ran ahead of the store's address it is replayed.
+	 */
+	private void startLoad(int slot, long ready) {
+		int store = forwardingStores[slot];
+		if (loadStarts[slot] == -1) {
+			loadStarts[slot] = ready;
+			if (store == -1 || instructions[store] == null || sequences[store] != forwardingSequences[slot]) {
+				execute(slot, ready, instructions[slot].getExecutionTime());
+				return;
+			}
+			
+			if (addressReady[store] == -1)
+				depend(slot, addressProducers[store]);
+			if (dataReady[store] == -1)
+				depend(slot, dataProducers[store]);
+			if (pendingOperands[slot] > 0)
+				return;
+		}
+		
+		long started = loadStarts[slot];
+		if (addressReady[store] > started)
+			started = addressReady[store] + replayPenalty;
+		execute(slot, Math.max(started, dataReady[store]), forwardLatency);
+	}
+	
+	private void execute(int slot, long started, int time) {
+		executed[slot] = started + time;
+		executing.add(executed[slot] + 1, slot);
+	}
+	
+	/**
+	 * Writes the oldest finished instructions on the buses, waking the ones waiting for
+	 * them. A woken instruction that finishes in the same cycle can take a bus left over.
+	 */
+	private void broadcast() {
+		for (int i = 0; i < buses; i++) {
+			while (!executing.isEmpty() && executing.peekKey() <= cycle) {
+				int slot = executing.poll();
+				finished.add(sequences[slot], slot);
+			}
+			
+			if (finished.isEmpty())
+				return;
+			
+			write(finished.poll());
+		}
+	}
+	
+	private void write(int slot) {
+		written[slot] = cycle;
+		for (int i = 0; i < consumerCount[slot]; i++) {
+			int consumer = consumers[slot][i];
+			if (addressProducers[consumer] == slot) {
+				addressProducers[consumer] = -1;
+				addressReady[consumer] = cycle;
+				unknownAddresses--;
+			}
+			if (dataProducers[consumer] == slot) {
+				dataProducers[consumer] = -1;
+				dataReady[consumer] = cycle;
+			}
+			operandsReady[consumer] = Math.max(operandsReady[consumer], cycle);
+			if (--pendingOperands[consumer] == 0)
+				start(consumer);
+		}
+		consumerCount[slot] = 0;
+	}
+
+}
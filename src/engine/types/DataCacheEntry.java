@@ -5,10 +5,12 @@ public class DataCacheEntry {
 	private int tag;
 	private int dataAddress;
 	private byte[] data;
-	private int age;
+	private long age;
 	private boolean dirty;
+	private boolean shared;
+	private int owner;
 	
-	public DataCacheEntry(int tag, byte[] data, int dataAddress, int age) {
+	public DataCacheEntry(int tag, byte[] data, int dataAddress, long age) {
 		this.tag = tag;
 		this.data = data.clone();
 		this.dataAddress = dataAddress;
@@ -31,7 +33,7 @@ public class DataCacheEntry {
 		return dataAddress;
 	}
 	
-	public int getAge() {
+	public long getAge() {
 		return age;
 	}
 	
@@ -42,5 +44,32 @@ public class DataCacheEntry {
 	public void setDirty() {
 		this.dirty = true;
 	}
+	
+	public void setClean() {
+		this.dirty = false;
+	}
+	
+	/**
+	 * Returns whether another cache on a coherence bus may hold the line too, so that
+	 * writing to it must first invalidate their copies.
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+	
+	public void setShared(boolean shared) {
+		this.shared = shared;
+	}
+	
+	/**
+	 * @return the program whose access brought the line in
+	 */
+	public int getOwner() {
+		return owner;
+	}
+	
+	public void setOwner(int owner) {
+		this.owner = owner;
+	}
 
 }
@@ -0,0 +1,6 @@
+package engine.types;
+
+public enum DisambiguationPolicy {
+	CONSERVATIVE,
+	SPECULATIVE
+}
@@ -0,0 +1,10 @@
+package engine.types;
+
+/**
+ * How the front end picks the hardware context to fetch from: each in turn, or the one
+ * with the fewest instructions waiting to execute.
+ */
+public enum FetchPolicy {
+	ROUND_ROBIN,
+	ICOUNT
+}
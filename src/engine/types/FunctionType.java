@@ -9,5 +9,26 @@ public enum FunctionType {
 	STORE,
 	BRANCH,
 	JUMP,
-	JUMP_AND_LINK
+	JUMP_AND_LINK;
+	
+	private static final int[] STORE_SOURCES = {0, 1, 2};
+	private static final int[] BRANCH_SOURCES = {0, 1};
+	private static final int[] OTHER_SOURCES = {1, 2};
+	
+	public boolean writesRegister() {
+		return this != STORE && this != BRANCH && this != JUMP;
+	}
+	
+	/**
+	 * Returns the positions of the operands that are read, when they are registers.
+	 */
+	public int[] getSourceOperands() {
+		if (this == STORE || this == JUMP)
+			return STORE_SOURCES;
+		
+		if (this == BRANCH)
+			return BRANCH_SOURCES;
+		
+		return OTHER_SOURCES;
+	}
 }
@@ -0,0 +1,38 @@
+package engine.types;
+
+/**
+ * Formats of memory images: raw bytes from address 0 on, Intel HEX records of the bytes
+ * written, or the loadable segments of a 32-bit ELF executable.
+ */
+public enum ImageFormat {
+	RAW("Raw Binary", "bin"),
+	INTEL_HEX("Intel HEX", "hex"),
+	ELF("ELF", "elf");
+	
+	private String name;
+	private String extension;
+	
+	private ImageFormat(String name, String extension) {
+		this.name = name;
+		this.extension = extension;
+	}
+	
+	public String getExtension() {
+		return extension;
+	}
+	
+	/**
+	 * Returns the format of an image file, by its extension, taking any unknown one for raw.
+	 */
+	public static ImageFormat forFile(String fileName) {
+		String lower = fileName.toLowerCase();
+		for (ImageFormat format : values())
+			if (lower.endsWith("." + format.extension))
+				return format;
+		return (lower.endsWith(".ihex") || lower.endsWith(".ihx"))? INTEL_HEX : RAW;
+	}
+	
+	public String toString() {
+		return name;
+	}
+}
@@ -10,6 +10,9 @@ public class Instruction implements Cloneable {
 	private int executionTime;
 	private int destination;
 	private int effectiveAddress;
+	private int[] accessTimes;
+	private int thread;
+	private int switchCycles;
 	
 	public Instruction(int address, String operation, Object[] operands) {
 		this.address = address;
@@ -69,6 +72,54 @@ public class Instruction implements Cloneable {
 		return effectiveAddress;
 	}
 	
+	/**
+	 * Sets the hardware context that executed the instruction, whose registers it names.
+	 */
+	public void setThread(int thread) {
+		this.thread = thread;
+	}
+	
+	public int getThread() {
+		return thread;
+	}
+	
+	/**
+	 * Makes the instruction the first after a context switch, which it issues after once
+	 * every earlier instruction has committed and the given cycles have passed.
+	 */
+	public void setSwitchCycles(int switchCycles) {
+		this.switchCycles = switchCycles;
+	}
+	
+	/**
+	 * @return the cycles of the context switch before the instruction, or 0 if none
+	 */
+	public int getSwitchCycles() {
+		return switchCycles;
+	}
+	
+	/**
+	 * Sets the cycles a memory access spent in each data cache level, from the first,
+	 * and in memory last.
+	 */
+	public void setAccessTimes(int[] accessTimes) {
+		this.accessTimes = accessTimes;
+	}
+	
+	/**
+	 * @return the cycles spent in each level by a memory access, or null if none
+	 */
+	public int[] getAccessTimes() {
+		return accessTimes;
+	}
+	
+	/**
+	 * Returns whether a branch was taken, judged from the address it went to.
+	 */
+	public boolean isTaken() {
+		return effectiveAddress == address + (Integer)operands[2] + 2;
+	}
+	
 	public String format(int operation, int operand) {
 		String instruction = String.format("%-" + operation + "s ", this.operation);
 		for (int i = 0; i < operands.length - 1; i++) 
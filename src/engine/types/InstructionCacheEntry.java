@@ -3,12 +3,17 @@ package engine.types;
 public class InstructionCacheEntry {
 
 	private int tag;
-	private Instruction[] instructions;
-	private int age;
+	private short[] words;
+	private int version;
+	private long age;
 	
-	public InstructionCacheEntry(int tag, Instruction[] instructions, int age) {
+	/**
+	 * @param version the version of the code in memory the words were fetched at
+	 */
+	public InstructionCacheEntry(int tag, short[] words, int version, long age) {
 		this.tag = tag;
-		this.instructions = instructions;
+		this.words = words;
+		this.version = version;
 		this.age = age;
 	}
 
@@ -16,11 +21,15 @@ public class InstructionCacheEntry {
 		return tag;
 	}
 	
-	public Instruction[] getInstructions() {
-		return instructions;
+	public short[] getWords() {
+		return words;
 	}
 	
-	public int getAge() {
+	public int getVersion() {
+		return version;
+	}
+	
+	public long getAge() {
 		return age;
 	}
 	
@@ -0,0 +1,9 @@
+package engine.types;
+
+public enum PredictorType {
+	STATIC,
+	BIMODAL,
+	GSHARE,
+	TOURNAMENT,
+	TAGE
+}
@@ -0,0 +1,30 @@
+package engine.types;
+
+/**
+ * Reasons the cycles between two commits are spent, in the order an instruction goes
+ * through them. Memory access cycles are kept per cache level besides these.
+ */
+public enum StallType {
+	BASE("Base"),
+	FETCH("Fetch"),
+	MISPREDICT("Mispredict Flush"),
+	CONTEXT_SWITCH("Context Switch"),
+	ROB_FULL("ROB Full"),
+	RS_FULL("RS Full"),
+	FREE_LIST("Free List Empty"),
+	DATA("Data Dependency"),
+	ORDERING("Memory Ordering"),
+	UNIT("Unit Busy"),
+	EXECUTE("Execution"),
+	CDB("CDB Conflict");
+	
+	private String name;
+	
+	private StallType(String name) {
+		this.name = name;
+	}
+	
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,7 @@
+package engine.types;
+
+public enum TimingModel {
+	ANALYTIC,
+	EVENT_DRIVEN,
+	CROSS_CHECK
+}
@@ -1,6 +1,7 @@
 package gui;
 
-import engine.types.Instruction;
+import engine.InstructionEncoding;
+import engine.storage.Memory;
 import gui.components.ResizableTable;
 
 import java.awt.BorderLayout;
@@ -23,20 +24,26 @@ public class AssemblyPanel extends JPanel {
 	public AssemblyPanel(boolean hex) {
 		super(new BorderLayout(0, 10));
 
-		ArrayList<Instruction> instructions = Simulator.processor.getMemory().getInstructions();
-		String[][] text = new String[instructions.size()][2];
-		addresses = new int[instructions.size()];
+		// The words placed as instructions, decoded from memory as they are now
+		Memory memory = Simulator.processor.getMemory();
+		ArrayList<Integer> code = new ArrayList<Integer>();
+		for (int address = 0; address <= memory.getLastInstructionAddress(); address += 2)
+			if (memory.isInstruction(address))
+				code.add(address);
+		
+		String[][] text = new String[code.size()][2];
+		addresses = new int[code.size()];
 		for (int i = 0; i < text.length; i++) {
-			addresses[i] = instructions.get(i).getAddress();
+			addresses[i] = code.get(i);
 			text[i][0] = String.format((hex) ? " 0x%04X" : " %d", addresses[i]);
-			text[i][1] = " " + instructions.get(i).toString();
+			text[i][1] = " " + InstructionEncoding.format(memory.getWord(addresses[i]), 5, 2);
 		}
 
 		resizableTable = new ResizableTable(text, new String[] {"Address", "Instruction"}, new int[]{35, 0}) {
 			public Component prepareRenderer(TableCellRenderer renderer, int rowIndex, int vColIndex) {
 				Component c = super.prepareRenderer(renderer, rowIndex, vColIndex);
-				int i = Simulator.processor.getRegisterFile().getPc() / 2;
-				c.setBackground((rowIndex == i)? new Color(255, 255, 153) : getBackground());
+				int pc = Simulator.processor.getRegisterFile().getPc();
+				c.setBackground((addresses[rowIndex] == pc)? new Color(255, 255, 153) : getBackground());
 				return c;
 			}
 		};
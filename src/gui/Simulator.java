@@ -11,6 +11,8 @@ import java.util.Arrays;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.UIManager;
@@ -29,8 +31,12 @@ import java.util.List;
 
 import engine.Assembler;
 import engine.Processor;
+import engine.storage.MemoryImage;
+import engine.types.ImageFormat;
 import gui.dialogs.MessageDialog;
+import gui.dialogs.CpiStackDialog;
 import gui.dialogs.InstructionSetDialog;
+import gui.dialogs.PredictorsDialog;
 import gui.dialogs.ScheduleDialog;
 
 @SuppressWarnings("serial")
@@ -44,6 +50,8 @@ public class Simulator extends JFrame {
 
 	public MessageDialog errorDialog;
 	private ScheduleDialog scheduleDialog;
+	private PredictorsDialog predictorsDialog;
+	private CpiStackDialog cpiStackDialog;
 	public InstructionSetDialog instructionSetDialog;
 
 	private FileManager fileManager;
@@ -87,11 +95,11 @@ public class Simulator extends JFrame {
 		};
 					
 		int[][] unitsConfig = {
-			{6},
-			{1, 2, 1},
-			{1, 2, 2},
-			{1, 2, 5},
-			{1, 2, 10},
+			{6, 1, 1, 1},
+			{1, 2, 1, 1},
+			{1, 2, 2, 1},
+			{1, 2, 5, 1},
+			{1, 2, 10, 10},
 			{1, 2},
 			{1, 2}
 		};
@@ -100,6 +108,8 @@ public class Simulator extends JFrame {
 		
 		errorDialog = new MessageDialog(this);
 		scheduleDialog = new ScheduleDialog(this);
+		predictorsDialog = new PredictorsDialog(this);
+		cpiStackDialog = new CpiStackDialog(this);
 		instructionSetDialog = new InstructionSetDialog(this);
 		fileManager = new FileManager(this);
 		recentFiles = new RecentFiles();
@@ -218,8 +228,52 @@ public class Simulator extends JFrame {
 		updateRecentFilesMenu(recentMenu);
 		fileMenu.add(recentMenu);
 
+		fileMenu.addSeparator();
+
+		JMenuItem loadImageItem = new JMenuItem("Load Memory Image...");
+		loadImageItem.addActionListener(e -> transferMemoryImage(true));
+		fileMenu.add(loadImageItem);
+
+		JMenuItem dumpImageItem = new JMenuItem("Dump Memory Image...");
+		dumpImageItem.addActionListener(e -> transferMemoryImage(false));
+		fileMenu.add(dumpImageItem);
+
 		menuBar.add(fileMenu);
 
+		// View menu
+		JMenu viewMenu = new JMenu("View");
+		viewMenu.setMnemonic('V');
+
+		JMenuItem scheduleItem = new JMenuItem("Instruction Schedule");
+		scheduleItem.addActionListener(e -> scheduleDialog.showSchedule());
+		viewMenu.add(scheduleItem);
+
+		JMenuItem cpiStackItem = new JMenuItem("CPI Stack");
+		cpiStackItem.addActionListener(e -> cpiStackDialog.showCpiStack());
+		viewMenu.add(cpiStackItem);
+
+		viewMenu.addSeparator();
+
+		JCheckBoxMenuItem captureItem = new JCheckBoxMenuItem("Capture Branches");
+		captureItem.addActionListener(e -> processor.setBranchCapture(captureItem.isSelected()));
+		viewMenu.add(captureItem);
+
+		JCheckBoxMenuItem wrongPathItem = new JCheckBoxMenuItem("Execute Wrong Paths");
+		wrongPathItem.addActionListener(e -> processor.setWrongPath(wrongPathItem.isSelected()));
+		viewMenu.add(wrongPathItem);
+
+		JMenuItem predictorsItem = new JMenuItem("Compare Predictors");
+		predictorsItem.addActionListener(e -> {
+			try {
+				predictorsDialog.showComparison();
+			} catch (Exception ex) {
+				errorDialog.showError(ex.getMessage());
+			}
+		});
+		viewMenu.add(predictorsItem);
+
+		menuBar.add(viewMenu);
+
 		// Help menu
 		JMenu helpMenu = new JMenu("Help");
 		helpMenu.setMnemonic('H');
@@ -255,6 +309,8 @@ public class Simulator extends JFrame {
 			boolean finished = processor.execute(stepped);
 			storageViewer.refresh();
 			assemblyPanel.repaint();
+			if (!finished && scheduleDialog.isVisible())
+				scheduleDialog.refresh();
 			if (finished) {
 				scheduleDialog.showSchedule();
 				execute.setEnabled(false);
@@ -423,6 +479,40 @@ public class Simulator extends JFrame {
 		}
 	}
 
+	/**
+	 * Loads a memory image into memory at address 0, or dumps memory into one, in the
+	 * format given by the extension of the file chosen
+	 */
+	private void transferMemoryImage(boolean load)
+	{
+		JFileChooser chooser = new JFileChooser();
+		int result = (load)? chooser.showOpenDialog(this) : chooser.showSaveDialog(this);
+		if (result != JFileChooser.APPROVE_OPTION)
+		{
+			return;
+		}
+
+		File file = chooser.getSelectedFile();
+		try
+		{
+			if (load)
+			{
+				processor.getMemory().clearChanges();
+				MemoryImage.load(processor.getMemory(), file.toPath(), ImageFormat.forFile(file.getName()), 0);
+				storageViewer.refresh();
+			}
+			else
+			{
+				MemoryImage.dump(processor.getMemory(), file.toPath(), ImageFormat.forFile(file.getName()));
+			}
+		}
+		catch (Exception ex)
+		{
+			storageViewer.refresh();
+			errorDialog.showError(ex.getMessage());
+		}
+	}
+
 	private void updateRecentFilesMenu(JMenu recentMenu)
 	{
 		recentMenu.removeAll();
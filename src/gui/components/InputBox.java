@@ -30,10 +30,25 @@ public class InputBox extends JPanel {
 		return Integer.parseInt(input.getText());
 	}
 	
+	/**
+	 * Returns the comma separated numbers in the input.
+	 */
+	public int[] getValues() {
+		String[] parts = input.getText().split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+	
 	public void setInput(int number) {
 		input.setText(number + "");
 	}
 	
+	public void setInput(String text) {
+		input.setText(text);
+	}
+	
 	public void setEnabled(boolean enabled) {
 		input.setEnabled(enabled);
 	}
@@ -0,0 +1,61 @@
+package gui.components;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.GridLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.border.Border;
+import javax.swing.border.TitledBorder;
+
+@SuppressWarnings("serial")
+public class LoadStoreSettings extends JPanel {
+	
+	private JComboBox<String> policy;
+	private InputBox forwarding;
+	private InputBox replay;
+	
+	public LoadStoreSettings() {
+		super(new GridLayout(3, 1, 0, 5));
+		
+		JLabel l1 = new JLabel("Policy");
+		l1.setPreferredSize(new Dimension(100, l1.getPreferredSize().height));
+		
+		policy = new JComboBox<String>(new String[]{"Conservative", "Speculative"});
+		policy.setToolTipText("Conservative loads wait for the addresses of all earlier stores, speculative ones are replayed when they ran ahead of a store to their address");
+		policy.setFocusable(false);
+		
+		JPanel p1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+		p1.add(l1);
+		p1.add(policy);
+		
+		forwarding = new InputBox("Forwarding", 100, 8, "cycles");
+		forwarding.setToolTipText("Cycles for a load to get its data from a store that has not committed yet");
+		replay = new InputBox("Replay", 100, 8, "cycles");
+		replay.setToolTipText("Cycles added when a load is replayed after its store's address is known");
+		
+		add(p1);
+		add(forwarding);
+		add(replay);
+		
+		Border b1 = BorderFactory.createTitledBorder(null, "Memory Ordering", TitledBorder.LEFT, TitledBorder.TOP, 
+				new Font("Consolas", Font.PLAIN, 19), Color.RED);
+		setBorder(BorderFactory.createCompoundBorder(b1, BorderFactory.createEmptyBorder(0, 0, 5, 10)));
+	}
+	
+	public int[] getConfiguration() {
+		return new int[]{policy.getSelectedIndex(), forwarding.getValue(), replay.getValue()};
+	}
+	
+	public void setConfiguration(int[] configuration) {
+		policy.setSelectedIndex(configuration[0]);
+		forwarding.setInput(configuration[1]);
+		replay.setInput(configuration[2]);
+	}
+
+}
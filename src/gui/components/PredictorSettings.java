@@ -0,0 +1,76 @@
+package gui.components;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.GridLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.border.Border;
+import javax.swing.border.TitledBorder;
+
+@SuppressWarnings("serial")
+public class PredictorSettings extends JPanel {
+	
+	private JComboBox<String> type;
+	private InputBox entries;
+	private InputBox history;
+	private InputBox btb;
+	private InputBox ras;
+	private InputBox penalty;
+	
+	public PredictorSettings() {
+		super(new GridLayout(6, 1, 0, 5));
+		
+		JLabel l1 = new JLabel("Predictor");
+		l1.setPreferredSize(new Dimension(100, l1.getPreferredSize().height));
+		
+		type = new JComboBox<String>(new String[]{"Static", "Bimodal", "Gshare", "Tournament", "TAGE-lite"});
+		type.setFocusable(false);
+		
+		JPanel p1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+		p1.add(l1);
+		p1.add(type);
+		
+		entries = new InputBox("Entries", 100, 8, null);
+		entries.setToolTipText("Entries of each predictor table, a power of 2");
+		history = new InputBox("History", 100, 8, "bits");
+		history.setToolTipText("Global history length, up to 64 bits");
+		btb = new InputBox("BTB Entries", 100, 8, null);
+		btb.setToolTipText("Entries of the branch target buffer predicting JALR targets, 0 leaves them unpredicted");
+		ras = new InputBox("RAS Entries", 100, 8, null);
+		ras.setToolTipText("Entries of the return address stack predicting JALR returns");
+		penalty = new InputBox("Penalty", 100, 8, "cycles");
+		penalty.setToolTipText("Cycles to refill the front end after a mispredicted instruction commits");
+		
+		add(p1);
+		add(entries);
+		add(history);
+		add(btb);
+		add(ras);
+		add(penalty);
+		
+		Border b1 = BorderFactory.createTitledBorder(null, "Branch Prediction", TitledBorder.LEFT, TitledBorder.TOP, 
+				new Font("Consolas", Font.PLAIN, 19), Color.RED);
+		setBorder(BorderFactory.createCompoundBorder(b1, BorderFactory.createEmptyBorder(0, 0, 5, 10)));
+	}
+	
+	public int[] getConfiguration() {
+		return new int[]{type.getSelectedIndex(), entries.getValue(), history.getValue(), btb.getValue(), 
+				ras.getValue(), penalty.getValue()};
+	}
+	
+	public void setConfiguration(int[] configuration) {
+		type.setSelectedIndex(configuration[0]);
+		entries.setInput(configuration[1]);
+		history.setInput(configuration[2]);
+		btb.setInput(configuration[3]);
+		ras.setInput(configuration[4]);
+		penalty.setInput(configuration[5]);
+	}
+	
+}
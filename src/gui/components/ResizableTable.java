@@ -4,6 +4,7 @@ import javax.swing.JTable;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 
 @SuppressWarnings("serial")
 public class ResizableTable extends JTable {
@@ -25,9 +26,35 @@ public class ResizableTable extends JTable {
 	}
 	
 	public void setData(Object[][] data, Object[] headers) {
-		setModel(new DefaultTableModel(data, headers));
+		setData(new DefaultTableModel(data, headers));
+	}
+	
+	public void setData(TableModel model) {
+		setModel(model);
 		pack();
 	}
+	
+	/**
+	 * Widens the columns, where needed, to fit the given rows without measuring the others.
+	 * Used when rows are appended to a large model.
+	 */
+	public void fitRows(int firstRow, int lastRow) {
+		TableColumnModel columnModel = getColumnModel();
+		for (int col = 0; col < getColumnCount(); col++) {
+			int width = 0;
+			for (int row = firstRow; row <= lastRow; row++) {
+				int preferedWidth = (int) getCellRenderer(row, col).getTableCellRendererComponent(this, getValueAt(row, col), false, false, row, col).getPreferredSize().getWidth();
+				width = Math.max(width, preferedWidth);
+			}
+			width += getIntercellSpacing().width + spacing[col];
+			
+			TableColumn tableColumn = columnModel.getColumn(col);
+			if (width > tableColumn.getWidth()) {
+				getTableHeader().setResizingColumn(tableColumn);
+				tableColumn.setWidth(width);
+			}
+		}
+	}
 
 	private void pack() {
 		if (getColumnCount() == 0)
@@ -1,6 +1,7 @@
 package gui.components;
 
 import engine.types.FunctionType;
+import engine.types.TimingModel;
 import gui.Simulator;
 import gui.dialogs.ScheduleDialog;
 
@@ -16,6 +17,8 @@ import java.awt.event.ActionListener;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
@@ -26,27 +29,49 @@ import javax.swing.border.TitledBorder;
 public class UnitsSettings extends JPanel {
 
 	private JTextField[][] input;
+	private JCheckBox[] pipelined;
 	private InputBox rob;
+	private InputBox registers;
+	private InputBox[] widths;
+	private InputBox window;
+	private JComboBox<String> model;
+	private PredictorSettings predictorSettings;
+	private LoadStoreSettings loadStoreSettings;
 	
 	public UnitsSettings(final ScheduleDialog scheduleDialog) {
 		super(new FlowLayout(FlowLayout.LEFT, 0, 0));
 		
 		input = new JTextField[6][];
+		pipelined = new JCheckBox[4];
 		
-		JPanel p1 = new JPanel(new GridLayout(7, 3, 10, 5));
+		JPanel p1 = new JPanel(new GridLayout(7, 5, 10, 5));
 		p1.add(new JLabel(" Number "));
 		p1.add(new JLabel("Stations"));
 		p1.add(new JLabel(" Cycles "));
+		p1.add(new JLabel("Interval"));
+		p1.add(new JLabel("Pipelined"));
 		for (int i = 0; i < 6; i++) {
-			input[i] = new JTextField[i > 3? 2 : 3];
-			for (int j = 0; j < 3; j++) {
-				if (i > 3 && j == 2)
+			input[i] = new JTextField[i > 3? 2 : 4];
+			for (int j = 0; j < 4; j++) {
+				if (i > 3 && j >= 2)
 					p1.add(Box.createRigidArea(null));
 				else {
 					input[i][j] = new JTextField(6);
 					p1.add(input[i][j]);
 				}
 			}
+			
+			if (i > 3)
+				p1.add(Box.createRigidArea(null));
+			else {
+				final JTextField interval = input[i][3];
+				interval.setToolTipText("Cycles between instructions starting on the same unit");
+				pipelined[i] = new JCheckBox();
+				pipelined[i].setFocusable(false);
+				pipelined[i].setToolTipText("An unpipelined unit takes a new instruction only once the last one is done");
+				pipelined[i].addActionListener(e -> interval.setEnabled(((JCheckBox)e.getSource()).isSelected()));
+				p1.add(pipelined[i]);
+			}
 		}
 		
 		JPanel p2 = new JPanel(new GridLayout(7, 1, 0, 5));
@@ -78,8 +103,36 @@ public class UnitsSettings extends JPanel {
 					return;
 				}
 				
+				int windowSize;
+				try {
+					windowSize = window.getValue();
+				} catch (Exception ex) {
+					simulator.errorDialog.showError("Invalid/Missing input");
+					return;
+				}
+				
+				int[] predictorConfig;
+				try {
+					predictorConfig = predictorSettings.getConfiguration();
+				} catch (Exception ex) {
+					simulator.errorDialog.showError("Invalid/Missing input");
+					return;
+				}
+				
+				int[] loadStoreConfig;
+				try {
+					loadStoreConfig = loadStoreSettings.getConfiguration();
+				} catch (Exception ex) {
+					simulator.errorDialog.showError("Invalid/Missing input");
+					return;
+				}
+				
 				try {
+					Simulator.processor.getUnitSet().setTimingModel(TimingModel.values()[model.getSelectedIndex()]);
 					Simulator.processor.getUnitSet().setConfiguration(config);
+					Simulator.processor.getUnitSet().setPredictorConfiguration(predictorConfig);
+					Simulator.processor.getUnitSet().setLoadStoreConfiguration(loadStoreConfig);
+					Simulator.processor.getUnitSet().setWindowSize(windowSize);
 					scheduleDialog.refresh();
 				} catch (Exception ex) {
 					simulator.errorDialog.showError(ex.getMessage());
@@ -90,43 +143,115 @@ public class UnitsSettings extends JPanel {
 		});
 		
 		rob = new InputBox("ROB Entries", 100, 8, null);
+		registers = new InputBox("Physical Regs", 100, 8, null);
+		registers.setToolTipText("Number of physical registers the 8 architectural ones are renamed onto, 0 for unlimited");
+		widths = new InputBox[]{
+				new InputBox("Issue Width", 100, 8, null),
+				new InputBox("Commit Width", 100, 8, null),
+				new InputBox("CDBs", 100, 8, null)
+		};
+		widths[0].setToolTipText("Number of instructions issued per cycle");
+		widths[1].setToolTipText("Number of instructions committed per cycle");
+		widths[2].setToolTipText("Number of common data buses, each writing one result per cycle");
+		window = new InputBox("Window", 100, 8, null);
+		window.setToolTipText("Number of most recent instructions kept in the schedule, 0 keeps all");
+		window.setInput(0);
+		
+		JLabel l1 = new JLabel("Model");
+		l1.setPreferredSize(new Dimension(100, l1.getPreferredSize().height));
+		
+		model = new JComboBox<String>(new String[]{"Analytic", "Event-driven", "Cross-check"});
+		model.setToolTipText("Cross-check shows the analytic schedule and counts where the event-driven one differs");
+		model.setFocusable(false);
+		
+		JPanel p6 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+		p6.add(l1);
+		p6.add(model);
+		
+		JPanel p5 = new JPanel(new GridLayout(7, 1, 0, 5));
+		p5.add(rob);
+		p5.add(registers);
+		for (InputBox width : widths)
+			p5.add(width);
+		p5.add(window);
+		p5.add(p6);
 		
 		JPanel p4 = new JPanel(new BorderLayout(0, 5));
-		p4.add(rob);
+		p4.add(p5);
 		p4.add(apply, BorderLayout.SOUTH);
 		p4.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createTitledBorder(""), BorderFactory.createEmptyBorder(7, 10, 7, 10)));
 
 		setConfiguration(new int[][]{
-				{6},
-				{1, 2, 1},
-				{1, 2, 2},
-				{1, 2, 5},
-				{1, 2, 10},
+				{6, 1, 1, 1},
+				{1, 2, 1, 1},
+				{1, 2, 2, 1},
+				{1, 2, 5, 1},
+				{1, 2, 10, 10},
 				{1, 2},
 				{1, 2},
 		});
 		
-		add(p3);
+		predictorSettings = new PredictorSettings();
+		loadStoreSettings = new LoadStoreSettings();
+		
+		JPanel p7 = new JPanel(new BorderLayout(0, 10));
+		p7.add(p3);
+		p7.add(loadStoreSettings, BorderLayout.SOUTH);
+		
+		add(p7);
+		add(Box.createRigidArea(new Dimension(10, 0)));
+		add(predictorSettings);
 		add(Box.createRigidArea(new Dimension(10, 0)));
 		add(p4);
 	}
 	
 	public int[][] getConfiguration(){
 		int[][] data = new int[input.length + 1][];
-		data[0] = new int[]{rob.getValue()};
+		data[0] = new int[]{rob.getValue(), widths[0].getValue(), widths[1].getValue(), widths[2].getValue()};
+		if (registers.getValue() != 0)
+			data[0] = new int[]{data[0][0], data[0][1], data[0][2], data[0][3], registers.getValue()};
 		for (int i = 0; i < input.length; i++) {
 			data[i + 1] = new int[input[i].length];
 			for (int j = 0; j < input[i].length; j++)
 				data[i + 1][j] = Integer.parseInt(input[i][j].getText());
+			if (i < pipelined.length && !pipelined[i].isSelected())
+				data[i + 1][3] = data[i + 1][2];
 		}
 		return data;
 	}
 	
+	public void setWindowSize(int windowSize) {
+		window.setInput(windowSize);
+	}
+	
+	public void setPredictorConfiguration(int[] configuration) {
+		predictorSettings.setConfiguration(configuration);
+	}
+	
+	public void setLoadStoreConfiguration(int[] configuration) {
+		loadStoreSettings.setConfiguration(configuration);
+	}
+	
+	public void setTimingModel(TimingModel timingModel) {
+		model.setSelectedIndex(timingModel.ordinal());
+	}
+	
 	public void setConfiguration(int[][] configuration) {
 		rob.setInput(configuration[0][0]);
-		for (int i = 0; i < input.length; i++)
+		registers.setInput((configuration[0].length > 4)? configuration[0][4] : 0);
+		for (int i = 0; i < widths.length; i++)
+			widths[i].setInput((configuration[0].length > i + 1)? configuration[0][i + 1] : 1);
+		for (int i = 0; i < input.length; i++) {
+			int[] row = configuration[i + 1];
 			for (int j = 0; j < input[i].length; j++)
-				input[i][j].setText(configuration[i + 1][j] + "");		
+				input[i][j].setText(((j < row.length)? row[j] : 1) + "");
+			
+			// A unit taking a new instruction only as often as its latency is unpipelined
+			if (i < pipelined.length) {
+				pipelined[i].setSelected(row.length < 4 || row[3] < row[2] || row[2] == 1);
+				input[i][3].setEnabled(pipelined[i].isSelected());
+			}
+		}
 	}
 	
 }
@@ -0,0 +1,111 @@
+package gui.dialogs;
+
+import gui.Simulator;
+import gui.components.InputBox;
+import gui.components.ResizableTable;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.border.LineBorder;
+
+@SuppressWarnings("serial")
+public class CpiStackDialog extends JDialog {
+	
+	private ResizableTable resizableTable;
+	private InputBox from;
+	private InputBox to;
+	
+	public CpiStackDialog(final Simulator simulator) {
+		super(simulator, "CPI Stack");
+		
+		setIconImage(simulator.getIconImage());
+		
+		resizableTable = new ResizableTable(new int[]{20, 10, 10, 0});
+		resizableTable.setRowHeight(21);
+		resizableTable.setIntercellSpacing(new Dimension(10, 0));
+		resizableTable.setPreferredScrollableViewportSize(new Dimension(420, 300));
+		resizableTable.getTableHeader().setResizingAllowed(false);
+		
+		JScrollPane scrollPane = new JScrollPane(resizableTable);
+		scrollPane.setBorder(new LineBorder(Color.GRAY, 1));
+		scrollPane.setFocusable(false);
+		scrollPane.getVerticalScrollBar().setUnitIncrement(7);
+		scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+		scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		
+		from = new InputBox("From", 40, 6, null);
+		from.setToolTipText("First instruction address of the range");
+		to = new InputBox("To", 40, 6, null);
+		to.setToolTipText("Last instruction address of the range");
+		
+		JButton show = new JButton("Show");
+		show.setFocusable(false);
+		show.addActionListener(new ActionListener(){
+			
+			public void actionPerformed(ActionEvent e) {
+				try {
+					refresh(from.getValue(), to.getValue());
+				} catch (Exception ex) {
+					simulator.errorDialog.showError("Invalid/Missing input");
+				}
+			}
+			
+		});
+		
+		JPanel p1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+		p1.add(from);
+		p1.add(to);
+		p1.add(show);
+		
+		JButton ok = new JButton("OK");
+		ok.setFocusable(false);
+		ok.addActionListener(new ActionListener(){
+			
+			public void actionPerformed(ActionEvent e) {
+				setVisible(false);
+			}
+			
+		});
+		
+		JPanel p2 = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+		p2.add(ok);
+		
+		JPanel p4 = new JPanel(new BorderLayout(0, 10));
+		p4.add(p1, BorderLayout.NORTH);
+		p4.add(scrollPane);
+		p4.add(p2, BorderLayout.SOUTH);
+		p4.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		
+		add(p4);
+		setResizable(false);
+		pack();
+	}
+	
+	/**
+	 * Shows the CPI stack of the whole program, which a range of addresses can narrow down.
+	 */
+	public void showCpiStack() {
+		int last = Math.max(0, Simulator.processor.getMemory().getLastInstructionAddress());
+		from.setInput(0);
+		to.setInput(last);
+		refresh(0, last);
+		setLocationRelativeTo(null);
+		setVisible(true);
+	}
+	
+	private void refresh(int first, int last) {
+		Object[] display = Simulator.processor.getUnitSet().displayCpiStack(first, last);
+		resizableTable.setData((Object[][])display[0], (Object[])display[1]);
+	}
+	
+}
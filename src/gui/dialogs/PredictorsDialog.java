@@ -0,0 +1,98 @@
+package gui.dialogs;
+
+import engine.prediction.BranchTrace;
+import engine.prediction.PredictorEvaluation;
+import gui.Simulator;
+import gui.components.ResizableTable;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.border.LineBorder;
+
+@SuppressWarnings("serial")
+public class PredictorsDialog extends JDialog {
+	
+	private ResizableTable resizableTable;
+	private JTextArea data;
+	
+	public PredictorsDialog(Simulator simulator) {
+		super(simulator, "Branch Predictor Comparison");
+		
+		setIconImage(simulator.getIconImage());
+		
+		resizableTable = new ResizableTable(new int[]{10, 5, 5, 5, 5, 5, 5, 0});
+		resizableTable.setRowHeight(21);
+		resizableTable.setIntercellSpacing(new Dimension(10, 0));
+		resizableTable.setPreferredScrollableViewportSize(new Dimension(0, 300));
+		resizableTable.getTableHeader().setResizingAllowed(false);
+		
+		JScrollPane scrollPane = new JScrollPane(resizableTable);
+		scrollPane.setBorder(new LineBorder(Color.GRAY, 1));
+		scrollPane.setFocusable(false);
+		scrollPane.getVerticalScrollBar().setUnitIncrement(7);
+		scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+		scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		
+		data = new JTextArea(2, 63);
+		data.setBorder(BorderFactory.createCompoundBorder(new LineBorder(Color.GRAY, 1), BorderFactory.createEmptyBorder(5, 10, 5, 5)));
+		data.setEnabled(false);
+		data.setDisabledTextColor(new Color(100, 100, 100));
+		
+		JButton ok = new JButton("OK");
+		ok.setFocusable(false);
+		ok.addActionListener(new ActionListener(){
+			
+			public void actionPerformed(ActionEvent e) {
+				setVisible(false);
+			}
+			
+		});
+		
+		JPanel p2 = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+		p2.add(ok);
+		
+		JPanel p3 = new JPanel(new BorderLayout(0, 10));
+		p3.add(data);
+		p3.add(p2, BorderLayout.SOUTH);
+		
+		JPanel p4 = new JPanel(new BorderLayout(0, 10));
+		p4.add(scrollPane);
+		p4.add(p3, BorderLayout.SOUTH);
+		p4.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		
+		add(p4);
+		setResizable(false);
+		pack();
+	}
+	
+	/**
+	 * Evaluates the predictor types over a range of sizes on the captured branches of the
+	 * last run, keeping the BTB, RAS and penalty of the schedule's predictor.
+	 */
+	public void showComparison() {
+		BranchTrace trace = Simulator.processor.getBranchTrace();
+		if (trace == null || trace.size() == 0)
+			throw new IllegalArgumentException("No branches captured, enable capturing and run the program first");
+		
+		int[] configuration = Simulator.processor.getUnitSet().getPredictorConfiguration();
+		PredictorEvaluation[] evaluations = PredictorEvaluation.evaluate(trace, PredictorEvaluation.getSweep(configuration));
+		Object[] display = PredictorEvaluation.display(evaluations);
+		resizableTable.setData((Object[][])display[0], (Object[])display[1]);
+		data.setText(String.format("Executed : %d Instructions\nBranches : %d Captured, %d Predictors compared", 
+				trace.getInstructions(), trace.size(), evaluations.length));
+		setLocationRelativeTo(null);
+		setVisible(true);
+	}
+	
+}
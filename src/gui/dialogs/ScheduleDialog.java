@@ -1,6 +1,9 @@
 package gui.dialogs;
 
+import engine.ScheduleEvaluation;
+import engine.UnitSet;
 import gui.Simulator;
+import gui.components.InputBox;
 import gui.components.ResizableTable;
 import gui.components.UnitsSettings;
 
@@ -16,24 +19,37 @@ import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.border.LineBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
 
 @SuppressWarnings("serial")
 public class ScheduleDialog extends JDialog {
 	
 	private UnitsSettings unitsSettings;
 	private ResizableTable resizableTable;
+	private ScheduleModel schedule;
+	private ResizableTable occupancyTable;
+	private ResizableTable limitsTable;
+	private JScrollPane limitsPane;
+	private ResizableTable variantsTable;
+	private InputBox robSizes;
+	private InputBox stations;
+	private InputBox factors;
+	private JTabbedPane tabs;
 	private JTextArea data;
 	
-	public ScheduleDialog(Simulator simulator) {
+	public ScheduleDialog(final Simulator simulator) {
 		super(simulator, "Instruction Scheduling");
 		
 		setIconImage(simulator.getIconImage());
 		
 		unitsSettings = new UnitsSettings(this);
 		
-		resizableTable = new ResizableTable(new int[]{35, 5, 5, 5, 0});
+		resizableTable = new ResizableTable(new int[]{35, 5, 5, 5, 5, 0});
 		resizableTable.setRowHeight(21);
 		resizableTable.setIntercellSpacing(new Dimension(10, 0));
 		resizableTable.setPreferredScrollableViewportSize(new Dimension(0, 220));
@@ -46,7 +62,98 @@ public class ScheduleDialog extends JDialog {
 		scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 		scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
 				
-		data = new JTextArea(3, 63);
+		occupancyTable = new ResizableTable(new int[]{10, 5, 5, 5, 5, 25});
+		occupancyTable.setRowHeight(21);
+		occupancyTable.setIntercellSpacing(new Dimension(10, 0));
+		occupancyTable.setPreferredScrollableViewportSize(new Dimension(0, 220));
+		occupancyTable.getTableHeader().setResizingAllowed(false);
+		
+		JScrollPane occupancyPane = new JScrollPane(occupancyTable);
+		occupancyPane.setBorder(new LineBorder(Color.GRAY, 1));
+		occupancyPane.setFocusable(false);
+		occupancyPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		
+		limitsTable = new ResizableTable(new int[]{20, 10, 10, 10});
+		limitsTable.setRowHeight(21);
+		limitsTable.setIntercellSpacing(new Dimension(10, 0));
+		limitsTable.setPreferredScrollableViewportSize(new Dimension(0, 220));
+		limitsTable.getTableHeader().setResizingAllowed(false);
+		
+		limitsPane = new JScrollPane(limitsTable);
+		limitsPane.setBorder(new LineBorder(Color.GRAY, 1));
+		limitsPane.setFocusable(false);
+		limitsPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		
+		variantsTable = new ResizableTable(new int[]{10, 10, 15, 10, 5, 5});
+		variantsTable.setRowHeight(21);
+		variantsTable.setIntercellSpacing(new Dimension(10, 0));
+		variantsTable.setPreferredScrollableViewportSize(new Dimension(0, 190));
+		variantsTable.getTableHeader().setResizingAllowed(false);
+		
+		JScrollPane variantsPane = new JScrollPane(variantsTable);
+		variantsPane.setBorder(new LineBorder(Color.GRAY, 1));
+		variantsPane.setFocusable(false);
+		variantsPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		
+		robSizes = new InputBox("ROB", 30, 8, null);
+		robSizes.setToolTipText("ROB sizes to compare, separated by commas");
+		robSizes.setInput("4, 8, 16, 32");
+		stations = new InputBox("Stations", 50, 6, null);
+		stations.setToolTipText("Reservation stations per unit to compare, separated by commas");
+		stations.setInput("1, 2, 4");
+		factors = new InputBox("Latency x", 55, 6, null);
+		factors.setToolTipText("Factors of the units' latencies to compare, separated by commas");
+		factors.setInput("1, 2");
+		
+		JButton compare = new JButton("Compare");
+		compare.setFocusable(false);
+		compare.addActionListener(new ActionListener(){
+			
+			public void actionPerformed(ActionEvent e) {
+				int[] sizes, counts, scales;
+				try {
+					sizes = robSizes.getValues();
+					counts = stations.getValues();
+					scales = factors.getValues();
+				} catch (Exception ex) {
+					simulator.errorDialog.showError("Invalid/Missing input");
+					return;
+				}
+				
+				try {
+					compare(sizes, counts, scales);
+				} catch (IllegalArgumentException ex) {
+					simulator.errorDialog.showError(ex.getMessage());
+				}
+			}
+			
+		});
+		
+		JPanel p5 = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+		p5.add(robSizes);
+		p5.add(stations);
+		p5.add(factors);
+		p5.add(compare);
+		
+		JPanel p6 = new JPanel(new BorderLayout(0, 5));
+		p6.add(p5, BorderLayout.NORTH);
+		p6.add(variantsPane);
+		
+		tabs = new JTabbedPane();
+		tabs.setFocusable(false);
+		tabs.addTab("Schedule", scrollPane);
+		tabs.addTab("Occupancy", occupancyPane);
+		tabs.addTab("Limits", limitsPane);
+		tabs.addTab("Compare", p6);
+		tabs.addChangeListener(new ChangeListener() {
+			
+			public void stateChanged(ChangeEvent e) {
+				refreshLimits();
+			}
+			
+		});
+		
+		data = new JTextArea(6, 63);
 		data.setBorder(BorderFactory.createCompoundBorder(new LineBorder(Color.GRAY, 1), BorderFactory.createEmptyBorder(5, 10, 5, 5)));
 		data.setEnabled(false);
 		data.setDisabledTextColor(new Color(100, 100, 100));
@@ -70,7 +177,7 @@ public class ScheduleDialog extends JDialog {
         
         JPanel p4 = new JPanel(new BorderLayout(0, 10)); 
 		p4.add(unitsSettings, BorderLayout.NORTH);
-		p4.add(scrollPane);
+		p4.add(tabs);
         p4.add(p3, BorderLayout.SOUTH);
         p4.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
@@ -82,14 +189,122 @@ public class ScheduleDialog extends JDialog {
 	public void showSchedule() {
 		refresh();
 		unitsSettings.setConfiguration(Simulator.processor.getUnitSet().getConfiguration());
+		unitsSettings.setWindowSize(Simulator.processor.getUnitSet().getWindowSize());
+		unitsSettings.setTimingModel(Simulator.processor.getUnitSet().getTimingModel());
+		unitsSettings.setPredictorConfiguration(Simulator.processor.getUnitSet().getPredictorConfiguration());
+		unitsSettings.setLoadStoreConfiguration(Simulator.processor.getUnitSet().getLoadStoreConfiguration());
 		setLocationRelativeTo(null);
 		setVisible(true);
 	}
 	
+	/**
+	 * Shows the rows of newly executed instructions and drops those of retired ones,
+	 * reloading the whole schedule only when the unit set discarded timings that were
+	 * already shown.
+	 */
 	public void refresh() {
-		Object[] text = Simulator.processor.getUnitSet().displaySchedule();
-		resizableTable.setData((String[][])text[0], (String[])text[1]);
-		data.setText((String)text[2]);
+		UnitSet unitSet = Simulator.processor.getUnitSet();
+		if (schedule == null || schedule.unitSet != unitSet || schedule.revision != unitSet.getRevision()) {
+			schedule = new ScheduleModel(unitSet);
+			resizableTable.setData(schedule);
+		} else {
+			schedule.retire();
+			int rows = schedule.rows;
+			schedule.append();
+			if (schedule.rows > rows)
+				resizableTable.fitRows(rows, schedule.rows - 1);
+		}
+		String statistics = unitSet.displayStatistics();
+		if (Simulator.processor.isWrongPath())
+			statistics += "\n" + Simulator.processor.displayWrongPath();
+		if (Simulator.processor.getContexts() > 1)
+			statistics += "\n" + Simulator.processor.displayContexts();
+		data.setText(statistics);
+		Object[] occupancy = unitSet.displayOccupancy();
+		occupancyTable.setData((Object[][]) occupancy[0], (Object[]) occupancy[1]);
+		refreshLimits();
+	}
+	
+	/**
+	 * Schedules the kept instructions under every combination of the given ROB sizes,
+	 * stations and latency factors applied to the current configuration.
+	 */
+	private void compare(int[] sizes, int[] counts, int[] scales) {
+		UnitSet unitSet = Simulator.processor.getUnitSet();
+		ScheduleEvaluation[] evaluations = ScheduleEvaluation.evaluate(unitSet, 
+				ScheduleEvaluation.getSweep(unitSet.getConfiguration(), sizes, counts, scales));
+		Object[] display = ScheduleEvaluation.display(evaluations);
+		variantsTable.setData((Object[][]) display[0], (Object[]) display[1]);
+	}
+	
+	/**
+	 * Reruns the limit study over the kept instructions while its tab is shown, since it
+	 * goes through all of them every time.
+	 */
+	private void refreshLimits() {
+		if (tabs.getSelectedComponent() != limitsPane)
+			return;
+		
+		Object[] limits = Simulator.processor.getUnitSet().displayLimits();
+		limitsTable.setData((Object[][]) limits[0], (Object[]) limits[1]);
+	}
+	
+	private static class ScheduleModel extends AbstractTableModel {
+		
+		private static final String[] headers = {"Instruction", "Issued", "Executed", "Written", "Committed", "Stall"};
+		
+		private UnitSet unitSet;
+		private int revision;
+		private long retired;
+		private int rows;
+		
+		ScheduleModel(UnitSet unitSet) {
+			this.unitSet = unitSet;
+			this.revision = unitSet.getRevision();
+			this.retired = unitSet.getRetiredCount();
+			this.rows = unitSet.getExecutedCount();
+		}
+		
+		void retire() {
+			int removed = (int) Math.min(rows, unitSet.getRetiredCount() - retired);
+			retired = unitSet.getRetiredCount();
+			if (removed > 0) {
+				rows -= removed;
+				fireTableRowsDeleted(0, removed - 1);
+			}
+		}
+		
+		void append() {
+			int count = unitSet.getExecutedCount();
+			if (count > rows) {
+				int first = rows;
+				rows = count;
+				fireTableRowsInserted(first, rows - 1);
+			}
+		}
+		
+		public int getRowCount() {
+			return rows;
+		}
+		
+		public int getColumnCount() {
+			return headers.length;
+		}
+		
+		public String getColumnName(int column) {
+			return headers[column];
+		}
+		
+		public Object getValueAt(int row, int column) {
+			if (column == 0)
+				return unitSet.getExecutedInstruction(row).toString();
+			
+			if (column == 5)
+				return unitSet.getStall(row);
+			
+			return unitSet.getTiming(row, column - 1) + "";
+		}
+		
 	}
 	
 }